@@ -0,0 +1,100 @@
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Yearly archive files for old certificates: <dir>/tc_<issue year>.db, one
+// per year, with the schema from SchemaMigrations.createArchiveSchema. Only
+// one year is attached (as SCHEMA) to a connection at a time, so any number
+// of years can exist without running into SQLite's limit on attached
+// databases. Moves attach and detach around their work; readers use() a year
+// and keep it attached, so scrolling through one year's rows does not attach
+// the file again for every page. Set the directory with -Dtc.archive.dir.
+final class CertificateArchive {
+
+    static final String SCHEMA = "tc_archive";
+
+    private static final File DIR = new File(System.getProperty("tc.archive.dir", "archive"));
+    private static final Pattern FILE_NAME = Pattern.compile("tc_(\\d{4})\\.db");
+
+    // Year attached to each connection, for use()
+    private static final Map<Connection, Integer> attached = new WeakHashMap<>();
+
+    private CertificateArchive() {
+    }
+
+    static File fileFor(int year) {
+        return new File(DIR, "tc_" + year + ".db");
+    }
+
+    // Years that have an archive file, newest first
+    static List<Integer> years() {
+        List<Integer> years = new ArrayList<>();
+        String[] names = DIR.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher m = FILE_NAME.matcher(name);
+                if (m.matches()) {
+                    years.add(Integer.parseInt(m.group(1)));
+                }
+            }
+        }
+        years.sort(Collections.reverseOrder());
+        return years;
+    }
+
+    // conn must not be inside a transaction. Creates the file (and its tables) when create is set.
+    static void attach(Connection conn, int year, boolean create) throws SQLException {
+        File file = fileFor(year);
+        if (create && !DIR.isDirectory() && !DIR.mkdirs()) {
+            throw new SQLException("Cannot create archive directory " + DIR.getAbsolutePath());
+        }
+        if (!create && !file.isFile()) {
+            throw new SQLException("No archive for " + year);
+        }
+        try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS " + SCHEMA)) {
+            ps.setString(1, file.getPath());
+            ps.execute();
+        }
+        synchronized (attached) {
+            attached.put(conn, year);
+        }
+        if (create) {
+            SchemaMigrations.createArchiveSchema(conn, SCHEMA);
+        }
+    }
+
+    static void detach(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DETACH DATABASE " + SCHEMA);
+        }
+        synchronized (attached) {
+            attached.remove(conn);
+        }
+    }
+
+    // Makes year's archive the attached one on a reader, swapping out
+    // another year if needed; it stays attached after the read
+    static void use(Connection conn, int year) throws SQLException {
+        Integer current;
+        synchronized (attached) {
+            current = attached.get(conn);
+        }
+        if (current != null && current == year) {
+            return;
+        }
+        if (current != null) {
+            detach(conn);
+        }
+        attach(conn, year, false);
+    }
+}
@@ -0,0 +1,191 @@
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// Bulk INSERT of certificates through the database writer thread. Rows are
+// collected on the caller's thread and each full chunk goes to the writer as
+// one task (see DatabaseManager.submit), sent with addBatch / executeBatch
+// under a savepoint so a bad row is retried on its own and reported instead
+// of failing the rest of the chunk. The writer is only held while a chunk is
+// written, so saves and deletes from the windows interleave with an import;
+// the next chunk is collected while the previous one commits.
+public final class CertificateBatchWriter {
+
+    // Default rows per executeBatch, overridable with -Dtc.import.chunkSize
+    public static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("tc.import.chunkSize", 500);
+
+    private static final int MAX_REPORTED_FAILURES = 50;
+
+    private final DatabaseManager db;
+    private final DatabaseManager.SqlWork<PreparedStatement> insertStatement;
+    private final Runnable afterChunk;
+    private final int chunkSize;
+
+    private List<String> pendingSources;
+    private List<TransferCertificate> pending;
+    private CompletableFuture<Chunk> writing;
+    private final List<String> failures = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private long elapsedNanos;
+    private int inserted;
+    private int failed;
+
+    // insertStatement gives the INSERT for the writer connection; afterChunk runs once a chunk has committed
+    CertificateBatchWriter(DatabaseManager db, DatabaseManager.SqlWork<PreparedStatement> insertStatement,
+                           Runnable afterChunk, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.db = db;
+        this.insertStatement = insertStatement;
+        this.afterChunk = afterChunk;
+        this.chunkSize = chunkSize;
+        this.pendingSources = new ArrayList<>(chunkSize);
+        this.pending = new ArrayList<>(chunkSize);
+    }
+
+    // source only labels failures (e.g. "Sheet1 row 12")
+    public void add(String source, TransferCertificate tc) throws SQLException {
+        try {
+            tc = CertificateDates.checked(tc);
+        } catch (IllegalArgumentException e) {
+            recordFailure(source, e.getMessage());
+            return;
+        }
+        pendingSources.add(source);
+        pending.add(tc);
+        if (pending.size() == chunkSize) {
+            flush();
+        }
+    }
+
+    // Record a row that was rejected before reaching the database
+    public void reject(String source, String reason) {
+        recordFailure(source, reason);
+    }
+
+    // Writes the last chunk and waits until every chunk has committed
+    public void finish() throws SQLException {
+        flush();
+        awaitWriting();
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    // Hands the pending rows to the writer thread, once the previous chunk is done
+    private void flush() throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        awaitWriting();
+        List<TransferCertificate> rows = pending;
+        List<String> sources = pendingSources;
+        pending = new ArrayList<>(chunkSize);
+        pendingSources = new ArrayList<>(chunkSize);
+        writing = db.submit(conn -> write(conn, rows, sources));
+    }
+
+    private void awaitWriting() throws SQLException {
+        if (writing == null) {
+            return;
+        }
+        Chunk chunk;
+        try {
+            chunk = writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Import cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+        } finally {
+            writing = null;
+        }
+        inserted += chunk.inserted;
+        for (int i = 0; i < chunk.failedSources.size(); i++) {
+            recordFailure(chunk.failedSources.get(i), chunk.failedReasons.get(i));
+        }
+        afterChunk.run();
+    }
+
+    // Outcome of one chunk, filled in on the writer thread
+    private static final class Chunk {
+        int inserted;
+        final List<String> failedSources = new ArrayList<>();
+        final List<String> failedReasons = new ArrayList<>();
+    }
+
+    // Runs on the writer thread, inside its transaction
+    private Chunk write(Connection conn, List<TransferCertificate> rows, List<String> sources) throws SQLException {
+        PreparedStatement insert = insertStatement.run(conn);
+        Chunk chunk = new Chunk();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SAVEPOINT import_chunk");
+            try {
+                for (TransferCertificate tc : rows) {
+                    bind(insert, tc);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                chunk.inserted = rows.size();
+            } catch (BatchUpdateException e) {
+                insert.clearBatch();
+                stmt.execute("ROLLBACK TO import_chunk");
+                insertOneByOne(insert, rows, sources, chunk);
+            }
+            stmt.execute("RELEASE import_chunk");
+        }
+        return chunk;
+    }
+
+    // Slow path after a chunk failed: SQLite rolls back only the failing
+    // statement, so the good rows of the chunk still go in.
+    private static void insertOneByOne(PreparedStatement insert, List<TransferCertificate> rows,
+                                       List<String> sources, Chunk chunk) {
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                bind(insert, rows.get(i));
+                insert.executeUpdate();
+                chunk.inserted++;
+            } catch (SQLException e) {
+                chunk.failedSources.add(sources.get(i));
+                chunk.failedReasons.add(e.getMessage());
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement insert, TransferCertificate tc) throws SQLException {
+        for (int i = 0; i < TransferCertificate.FIELD_COUNT; i++) {
+            insert.setString(i + 1, tc.get(i));
+        }
+    }
+
+    private void recordFailure(String source, String reason) {
+        failed++;
+        if (failures.size() < MAX_REPORTED_FAILURES) {
+            failures.add(source + ": " + reason);
+        }
+        System.err.println("Error importing " + source + ": " + reason);
+    }
+
+    public int getInserted() { return inserted; }
+
+    public int getFailed() { return failed; }
+
+    // First MAX_REPORTED_FAILURES failure messages
+    public List<String> getFailures() { return failures; }
+
+    public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : inserted * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    // One-line summary for status bars and dialogs
+    public String summary() {
+        return String.format("Imported %d records (%d failed) in %.1f s - %.0f rows/s",
+                inserted, failed, elapsedNanos / 1e9, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,44 @@
+
+// One entry of change_log: which record changed, how, and (for inserts and
+// updates) the record as it is now. Delivered to the windows by ChangeFeed.
+public final class CertificateChange {
+
+    public static final char INSERT = 'I';
+    public static final char UPDATE = 'U';
+    public static final char DELETE = 'D';
+
+    private final long seq;
+    private final int id;
+    private final char op;
+    private final TransferCertificate record;
+
+    CertificateChange(long seq, int id, char op, TransferCertificate record) {
+        this.seq = seq;
+        this.id = id;
+        this.op = op;
+        this.record = record;
+    }
+
+    public long getSeq() { return seq; }
+
+    public int getId() { return id; }
+
+    public char getOp() { return op; }
+
+    // Current record; null for a delete, or when the record was deleted since
+    public TransferCertificate getRecord() { return record; }
+
+    public boolean isDelete() {
+        return op == DELETE || record == null;
+    }
+
+    // Folds a later change to the same record into this one: an insert stays
+    // an insert (with the newer values), and an insert then delete cancels
+    // out (null)
+    CertificateChange then(CertificateChange later) {
+        if (op == INSERT) {
+            return later.isDelete() ? null : new CertificateChange(later.seq, id, INSERT, later.record);
+        }
+        return later;
+    }
+}
@@ -0,0 +1,157 @@
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+// Column-major block of grid rows: ids in an int[] and one String[] per
+// column, instead of an Object[] (or Vector) per row with a boxed id.
+// Repeated short values (gender, religion, course, dates...) share a single
+// String instance within the block. Not thread-safe; built on a loader
+// thread, then handed to the EDT.
+final class CertificateColumns {
+
+    // Values longer than this are rarely repeated and are not pooled
+    private static final int MAX_POOLED_LENGTH = 40;
+
+    private final int columnCount;
+    private int[] ids;
+    private String[][] columns;
+    private int size;
+    private Map<String, String> pool;
+
+    CertificateColumns(int columnCount, int capacity) {
+        this.columnCount = columnCount;
+        this.ids = new int[Math.max(1, capacity)];
+        this.columns = new String[columnCount][ids.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getId(int row) {
+        return ids[row];
+    }
+
+    // Id of the last row, the keyset position of the block's end; 0 when empty
+    int lastId() {
+        return size == 0 ? 0 : ids[size - 1];
+    }
+
+    // column 0 is the id; 1..columnCount are the text columns
+    Object getValue(int row, int column) {
+        return column == 0 ? (Object) ids[row] : columns[column - 1][row];
+    }
+
+    Object[] getRow(int row) {
+        Object[] values = new Object[columnCount + 1];
+        values[0] = ids[row];
+        for (int c = 0; c < columnCount; c++) {
+            values[c + 1] = columns[c][row];
+        }
+        return values;
+    }
+
+    void append(int id, String[] values) {
+        if (size == ids.length) {
+            grow(size * 2);
+        }
+        ids[size] = id;
+        for (int c = 0; c < columnCount; c++) {
+            columns[c][size] = pooled(values[c]);
+        }
+        size++;
+    }
+
+    void appendAll(CertificateColumns other) {
+        if (size + other.size > ids.length) {
+            grow(size + other.size);
+        }
+        System.arraycopy(other.ids, 0, ids, size, other.size);
+        for (int c = 0; c < columnCount; c++) {
+            System.arraycopy(other.columns[c], 0, columns[c], size, other.size);
+        }
+        size += other.size;
+    }
+
+    int indexOf(int id) {
+        for (int r = 0; r < size; r++) {
+            if (ids[r] == id) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    // Replaces a row's values in place (the id stays)
+    void set(int row, String[] values) {
+        for (int c = 0; c < columnCount; c++) {
+            columns[c][row] = values[c];
+        }
+    }
+
+    // Drops the rows from newSize on
+    void truncate(int newSize) {
+        if (newSize >= size) {
+            return;
+        }
+        for (int c = 0; c < columnCount; c++) {
+            Arrays.fill(columns[c], newSize, size, null);
+        }
+        size = newSize;
+    }
+
+    // Removes every row whose id is in the set, compacting the block in one
+    // pass; reports each removed row's former index and returns the count
+    int removeIds(Set<Integer> remove, IntConsumer removedRow) {
+        int kept = 0;
+        for (int r = 0; r < size; r++) {
+            if (remove.contains(ids[r])) {
+                removedRow.accept(r);
+                continue;
+            }
+            if (kept != r) {
+                ids[kept] = ids[r];
+                for (int c = 0; c < columnCount; c++) {
+                    columns[c][kept] = columns[c][r];
+                }
+            }
+            kept++;
+        }
+        for (int c = 0; c < columnCount; c++) {
+            Arrays.fill(columns[c], kept, size, null);
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    // Drops the string pool once the block is loaded; it is only needed while appending
+    void trimPool() {
+        pool = null;
+    }
+
+    private String pooled(String value) {
+        if (value == null || value.length() > MAX_POOLED_LENGTH) {
+            return value;
+        }
+        if (pool == null) {
+            pool = new HashMap<>();
+        }
+        String shared = pool.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    private void grow(int capacity) {
+        int[] newIds = new int[capacity];
+        System.arraycopy(ids, 0, newIds, 0, size);
+        ids = newIds;
+        for (int c = 0; c < columnCount; c++) {
+            String[] column = new String[capacity];
+            System.arraycopy(columns[c], 0, column, 0, size);
+            columns[c] = column;
+        }
+    }
+}
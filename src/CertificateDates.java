@@ -0,0 +1,200 @@
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.format.TextStyle;
+import java.util.BitSet;
+import java.util.Locale;
+
+// Date parsing/formatting shared by the form, the importer and the views.
+// DateTimeFormatter is immutable and thread-safe, so the formatters are built
+// once here instead of a new SimpleDateFormat per cell or keystroke.
+// Date columns are stored as ISO-8601 (yyyy-MM-dd), checked when written, so
+// reading them back for display never needs a parse.
+public final class CertificateDates {
+
+    // The date columns of TransferCertificate
+    public static final int[] FIELDS = {
+        TransferCertificate.DOB, TransferCertificate.ADMISSION_DATE,
+        TransferCertificate.LEAVING_DATE, TransferCertificate.ISSUE_DATE
+    };
+
+    // Format dates are stored in; sorts and compares correctly as text
+    public static final DateTimeFormatter STORAGE = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    // Format the form's fields use (matches its dd-MM-yyyy hint)
+    public static final DateTimeFormatter ENTRY =
+            DateTimeFormatter.ofPattern("dd-MM-uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    // Format the certificate grid shows dates in
+    public static final DateTimeFormatter DISPLAY =
+            DateTimeFormatter.ofPattern("dd/MM/uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    // Accepted input spellings, tried in order
+    private static final DateTimeFormatter[] INPUT_FORMATS = {
+        DateTimeFormatter.ofPattern("d-M-uuuu").withResolverStyle(ResolverStyle.STRICT),
+        DateTimeFormatter.ofPattern("d/M/uuuu").withResolverStyle(ResolverStyle.STRICT),
+        DateTimeFormatter.ofPattern("d.M.uuuu").withResolverStyle(ResolverStyle.STRICT),
+        DateTimeFormatter.ofPattern("uuuu-M-d").withResolverStyle(ResolverStyle.STRICT),
+    };
+
+    private static final String[] MONTHS = new String[12];
+    static {
+        for (Month m : Month.values()) {
+            MONTHS[m.ordinal()] = m.getDisplayName(TextStyle.FULL, Locale.ENGLISH).toUpperCase(Locale.ENGLISH);
+        }
+    }
+
+    private static final String[] ONES = {"", "ONE", "TWO", "THREE", "FOUR", "FIVE", "SIX", "SEVEN", "EIGHT", "NINE"};
+    private static final String[] TENS = {"", "", "TWENTY", "THIRTY", "FORTY", "FIFTY", "SIXTY", "SEVENTY", "EIGHTY", "NINETY"};
+    private static final String[] TEENS = {"TEN", "ELEVEN", "TWELVE", "THIRTEEN", "FOURTEEN", "FIFTEEN",
+                                           "SIXTEEN", "SEVENTEEN", "EIGHTEEN", "NINETEEN"};
+
+    private CertificateDates() {
+    }
+
+    // Parses any accepted spelling; null for blank or unparseable text
+    public static LocalDate parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String s = text.trim();
+        if (s.isEmpty() || !Character.isDigit(s.charAt(0))) {
+            return null;
+        }
+        if (isStored(s)) {
+            try {
+                return LocalDate.parse(s, STORAGE);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+        for (DateTimeFormatter f : INPUT_FORMATS) {
+            try {
+                return LocalDate.parse(s, f);
+            } catch (DateTimeException e) {
+                // try the next spelling
+            }
+        }
+        return null;
+    }
+
+    public static String format(LocalDate date) {
+        return date == null ? "" : STORAGE.format(date);
+    }
+
+    public static boolean isDateField(int field) {
+        for (int f : FIELDS) {
+            if (f == field) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Rewrites a recognised date in the storage format; anything else is returned trimmed
+    public static String normalize(String text) {
+        LocalDate date = parse(text);
+        return date != null ? format(date) : (text == null ? "" : text.trim());
+    }
+
+    // Storage form of user or sheet input; blank stays blank. Throws
+    // IllegalArgumentException for anything that is not a date.
+    public static String toStorage(String column, String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        LocalDate date = parse(text);
+        if (date == null) {
+            throw new IllegalArgumentException(column + " is not a valid date: " + text.trim());
+        }
+        return format(date);
+    }
+
+    // The record with every date column in storage form; see toStorage
+    public static TransferCertificate checked(TransferCertificate tc) {
+        return checked(tc, null);
+    }
+
+    // Only the date columns in fields (all when null). Columns not being
+    // written are left as they are, legacy non-date text included.
+    public static TransferCertificate checked(TransferCertificate tc, BitSet fields) {
+        TransferCertificate result = tc;
+        for (int field : FIELDS) {
+            if (fields != null && !fields.get(field)) {
+                continue;
+            }
+            String value = tc.get(field);
+            String stored = toStorage(TransferCertificate.COLUMNS[field], value);
+            if (!stored.equals(value)) {
+                result = result.with(field, stored);
+            }
+        }
+        return result;
+    }
+
+    // Grid text (dd/MM/yyyy) for a stored date; other text is shown as-is
+    public static String display(String text) {
+        return rearrange(text, '/');
+    }
+
+    // Form field text (dd-MM-yyyy) for a stored date; other text is shown as-is
+    public static String toEntry(String text) {
+        return rearrange(text, '-');
+    }
+
+    // Stored values are already valid, so display is a character shuffle, not a parse
+    private static String rearrange(String text, char separator) {
+        if (text == null) {
+            return "";
+        }
+        if (!isStored(text)) {
+            return text;
+        }
+        return new StringBuilder(10)
+                .append(text, 8, 10).append(separator)
+                .append(text, 5, 7).append(separator)
+                .append(text, 0, 4).toString();
+    }
+
+    // yyyy-MM-dd shape (digits and dashes only; validity is checked on write)
+    private static boolean isStored(String text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (i != 4 && i != 7 && (text.charAt(i) < '0' || text.charAt(i) > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // "05 MARCH TWO THOUSAND FIVE", as printed on the certificate
+    public static String toWords(LocalDate date) {
+        int day = date.getDayOfMonth();
+        return (day < 10 ? "0" : "") + day + " " + MONTHS[date.getMonthValue() - 1]
+                + " " + yearToWords(date.getYear());
+    }
+
+    public static String yearToWords(int year) {
+        StringBuilder sb = new StringBuilder();
+        int thousands = year / 1000;
+        int hundreds = (year % 1000) / 100;
+        int lastTwo = year % 100;
+
+        if (thousands != 0) sb.append(ONES[thousands]).append(" THOUSAND ");
+        if (hundreds != 0) sb.append(ONES[hundreds]).append(" HUNDRED ");
+
+        if (lastTwo >= 10 && lastTwo <= 19) {
+            sb.append(TEENS[lastTwo - 10]);
+        } else {
+            if (lastTwo / 10 != 0) sb.append(TENS[lastTwo / 10]).append(" ");
+            if (lastTwo % 10 != 0) sb.append(ONES[lastTwo % 10]);
+        }
+
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,163 @@
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+// What the certificate grid is currently showing: search text, filters and
+// sort order. Immutable; the repository turns it into a parameterised
+// WHERE/ORDER BY so filtering and sorting run in SQLite instead of over rows
+// held in the table model. Search text goes through the tc_search full-text
+// index (see SchemaMigrations); status and date filters use the date indexes.
+// With includeArchive the same conditions also run against each yearly
+// archive file (see CertificateArchive).
+public final class CertificateQuery {
+
+    // Issued: issue_date set. Pending: not issued yet. Completed: leaving_date set.
+    public enum Status { ANY, ISSUED, PENDING, COMPLETED }
+
+    public static final CertificateQuery ALL =
+            new CertificateQuery("", null, "id", true, Status.ANY, null, null, 0, false);
+
+    private final String search;
+    private final String searchColumn;
+    private final String orderBy;
+    private final boolean descending;
+    private final Status status;
+    private final LocalDate issuedFrom;
+    private final LocalDate issuedTo;
+    private final int admissionYear;
+    private final boolean includeArchive;
+
+    private CertificateQuery(String search, String searchColumn, String orderBy, boolean descending,
+                             Status status, LocalDate issuedFrom, LocalDate issuedTo, int admissionYear,
+                             boolean includeArchive) {
+        this.search = search == null ? "" : search.trim();
+        this.searchColumn = searchColumn;
+        this.orderBy = orderBy;
+        this.descending = descending;
+        this.status = status;
+        this.issuedFrom = issuedFrom;
+        this.issuedTo = issuedTo;
+        this.admissionYear = admissionYear;
+        this.includeArchive = includeArchive;
+    }
+
+    public CertificateQuery withSearch(String text) {
+        return new CertificateQuery(text, searchColumn, orderBy, descending, status, issuedFrom, issuedTo, admissionYear, includeArchive);
+    }
+
+    // Restricts the search text to one of SchemaMigrations.SEARCH_COLUMNS; null searches all of them
+    public CertificateQuery withSearchColumn(String column) {
+        return new CertificateQuery(search, column, orderBy, descending, status, issuedFrom, issuedTo, admissionYear, includeArchive);
+    }
+
+    // column is "id" or one of TransferCertificate.COLUMNS
+    public CertificateQuery withOrder(String column, boolean descending) {
+        return new CertificateQuery(search, searchColumn, column, descending, status, issuedFrom, issuedTo, admissionYear, includeArchive);
+    }
+
+    public CertificateQuery withStatus(Status status) {
+        return new CertificateQuery(search, searchColumn, orderBy, descending, status, issuedFrom, issuedTo, admissionYear, includeArchive);
+    }
+
+    // Inclusive issue_date range; either end may be null (open)
+    public CertificateQuery withIssueDates(LocalDate from, LocalDate to) {
+        return new CertificateQuery(search, searchColumn, orderBy, descending, status, from, to, admissionYear, includeArchive);
+    }
+
+    // Year of admission_date; 0 for any year
+    public CertificateQuery withAdmissionYear(int year) {
+        return new CertificateQuery(search, searchColumn, orderBy, descending, status, issuedFrom, issuedTo, year, includeArchive);
+    }
+
+    // Archived records follow the live ones, newest archive year first
+    public CertificateQuery withArchive(boolean include) {
+        return new CertificateQuery(search, searchColumn, orderBy, descending, status, issuedFrom, issuedTo, admissionYear, include);
+    }
+
+    public String getSearch() { return search; }
+
+    public String getOrderBy() { return orderBy; }
+
+    public boolean isDescending() { return descending; }
+
+    public Status getStatus() { return status; }
+
+    public boolean isIncludingArchive() { return includeArchive; }
+
+    public boolean isFiltered() {
+        return matchExpression(search) != null || status != Status.ANY
+                || issuedFrom != null || issuedTo != null || admissionYear != 0;
+    }
+
+    // Pages can continue from the last id seen (keyset) only when ordered by
+    // id within a single table; archive results are paged by offset
+    public boolean isKeysetOrder() {
+        return orderBy.equals("id") && !includeArchive;
+    }
+
+    // Appends this query's filter conditions (ANDed by the caller) and their
+    // parameters, for the tables of the given schema ("main" or an attached archive)
+    void conditions(String schema, List<String> clauses, List<Object> params) {
+        String match = matchExpression(search);
+        if (match != null) {
+            clauses.add("id IN (SELECT rowid FROM " + schema + ".tc_search WHERE tc_search MATCH ?)");
+            params.add(searchColumn == null ? match : "{" + searchColumn + "} : (" + match + ")");
+        }
+        switch (status) {
+            case ISSUED:
+                clauses.add("issue_date > ''");
+                break;
+            case PENDING:
+                clauses.add("(issue_date IS NULL OR issue_date = '')");
+                break;
+            case COMPLETED:
+                clauses.add("leaving_date > ''");
+                break;
+            default:
+                break;
+        }
+        // Dates are stored as yyyy-MM-dd, so a text range is a date range;
+        // non-date text sorts after '9' and falls outside it
+        if (issuedFrom != null || issuedTo != null) {
+            clauses.add("issue_date BETWEEN ? AND ?");
+            params.add(issuedFrom != null ? CertificateDates.format(issuedFrom) : "0000-01-01");
+            params.add(issuedTo != null ? CertificateDates.format(issuedTo) : "9999-12-31");
+        }
+        if (admissionYear != 0) {
+            clauses.add("admission_date BETWEEN ? AND ?");
+            params.add(CertificateDates.format(LocalDate.of(admissionYear, 1, 1)));
+            params.add(CertificateDates.format(LocalDate.of(admissionYear, 12, 31)));
+        }
+    }
+
+    // FTS5 query for free text: every word must start a token in one of the
+    // indexed columns ("kum 21cs" -> "kum"* "21cs"*). null when there is no word.
+    static String matchExpression(String text) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                sb.append(sb.length() == 0 ? "" : " ").append('"').append(word).append("\"*");
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CertificateQuery)) {
+            return false;
+        }
+        CertificateQuery q = (CertificateQuery) o;
+        return search.equals(q.search) && Objects.equals(searchColumn, q.searchColumn)
+                && orderBy.equals(q.orderBy) && descending == q.descending && status == q.status
+                && Objects.equals(issuedFrom, q.issuedFrom) && Objects.equals(issuedTo, q.issuedTo)
+                && admissionYear == q.admissionYear && includeArchive == q.includeArchive;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(search, searchColumn, orderBy, descending, status, issuedFrom, issuedTo,
+                admissionYear, includeArchive);
+    }
+}
@@ -0,0 +1,618 @@
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+// Virtual table model for the certificate grid. Only the row count is known
+// up front (one COUNT query); rows are fetched a page at a time, when the
+// table first asks for them, on a background thread. Pages ordered by id are
+// read by keyset (id < last id of the previous page) so deep pages cost the
+// same as the first. At most MAX_PAGES pages are kept, least recently used
+// out first. Each page is a CertificateColumns block (column-major arrays).
+// A refresh runs as a RefreshWorker that publishes the first screenful
+// before counting, then the rest of the first pages; every process() call
+// applies its coalesced chunks with one table event. The previous rows stay
+// on screen (stale) until the first chunk replaces them in bulk, and the row
+// count until the new count arrives, so a refresh neither flashes an empty
+// grid nor jumps the scroll position. All state is confined to the EDT.
+public final class CertificateTableModel extends AbstractTableModel {
+
+    public static final int PAGE_SIZE = Integer.getInteger("tc.view.pageSize", 200);
+    private static final int MAX_PAGES = Integer.getInteger("tc.view.cachedPages", 50);
+    // Rows fetched ahead of the COUNT so the grid fills immediately
+    private static final int FIRST_CHUNK = 50;
+    // Pages after the first loaded eagerly by a refresh
+    private static final int PREFETCH_PAGES = 2;
+
+    private static final String[] COLUMN_NAMES = {
+        "ID", "Student Name", "Register No", "Serial No", "Father Name",
+        "Date of Birth", "DOB (Words)", "Nationality", "Religion", "Caste", "Gender",
+        "Admission Date", "Course", "Games/Activities", "Fee Concession", "Last Exam Result",
+        "Leaving Date", "Class at Leaving", "Qualified for Promotion", "Reason for Leaving",
+        "Issue Date", "Conduct Character", "Other Remarks", "UMIS No"
+    };
+
+    // TransferCertificate field behind each column after ID (ncc is not shown)
+    private static final int[] FIELDS = {
+        TransferCertificate.STUDENT_NAME, TransferCertificate.REGISTER_NO, TransferCertificate.SERIAL_NO,
+        TransferCertificate.FATHER_NAME, TransferCertificate.DOB, TransferCertificate.DOB_WORDS,
+        TransferCertificate.NATIONALITY, TransferCertificate.RELIGION, TransferCertificate.CASTE,
+        TransferCertificate.GENDER, TransferCertificate.ADMISSION_DATE, TransferCertificate.COURSE,
+        TransferCertificate.GAMES, TransferCertificate.FEE_CONCESSION, TransferCertificate.RESULT,
+        TransferCertificate.LEAVING_DATE, TransferCertificate.CLASS_LEAVING, TransferCertificate.QUALIFIED,
+        TransferCertificate.REASON, TransferCertificate.ISSUE_DATE, TransferCertificate.CONDUCT,
+        TransferCertificate.REMARKS, TransferCertificate.UMIS_NO
+    };
+
+    private final TransferCertificateRepository repository;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tc-grid-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<Integer, CertificateColumns> pages = new LinkedHashMap<Integer, CertificateColumns>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, CertificateColumns> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    // Last id of each full page seen so far; the keyset starting point for the page after it
+    private final TreeMap<Integer, Integer> lastIds = new TreeMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+
+    private CertificateQuery query = CertificateQuery.ALL;
+    private int rowCount;
+    private int totalCount;
+    private boolean countKnown;
+    // Rows shown are from before setQuery; no page of the new query is cached yet
+    private boolean stale;
+    private int generation;
+    private volatile int liveGeneration;
+    private RefreshWorker refreshWorker;
+    private Consumer<Exception> errorHandler = e -> e.printStackTrace();
+
+    public CertificateTableModel(TransferCertificateRepository repository) {
+        this.repository = repository;
+    }
+
+    public void setErrorHandler(Consumer<Exception> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    public CertificateQuery getQuery() {
+        return query;
+    }
+
+    // Reloads the query; the cached pages are dropped when its first rows
+    // arrive. A load still running for the previous query is cancelled and
+    // its results are ignored.
+    public void setQuery(CertificateQuery newQuery) {
+        query = newQuery;
+        int gen = ++generation;
+        liveGeneration = gen;
+        if (refreshWorker != null) {
+            refreshWorker.cancel(false); // checked between chunks; no interrupt mid-query
+        }
+        stale = true;
+        loading.clear();
+        for (int p = 0; p <= PREFETCH_PAGES; p++) {
+            loading.add(p); // the worker fetches these
+        }
+        refreshWorker = new RefreshWorker(newQuery, gen);
+        refreshWorker.execute();
+    }
+
+    // Swaps the previous query's rows for the new result set with a single
+    // fireTableDataChanged; the row count stays until the new one is known
+    private void replaceAll(List<Chunk> chunks) {
+        stale = false;
+        pages.clear();
+        lastIds.clear();
+        countKnown = false;
+        apply(chunks);
+        fireTableDataChanged();
+    }
+
+    // Stores published chunks; returns the first and last model rows they filled
+    private int[] apply(List<Chunk> chunks) {
+        int firstUpdated = Integer.MAX_VALUE;
+        int lastUpdated = -1;
+        for (Chunk chunk : chunks) {
+            if (chunk.rows == null) {
+                countKnown = true;
+                rowCount = chunk.count;
+                totalCount = chunk.total;
+                continue;
+            }
+            CertificateColumns page = pages.get(chunk.page);
+            int start = chunk.page * PAGE_SIZE + (page == null ? 0 : page.size());
+            if (page == null) {
+                page = chunk.rows;
+            } else {
+                page.appendAll(chunk.rows);
+            }
+            store(chunk.page, page);
+            if (chunk.pageComplete) {
+                loading.remove(chunk.page);
+            }
+            if (!countKnown) {
+                rowCount = Math.max(rowCount, start + chunk.rows.size());
+            }
+            firstUpdated = Math.min(firstUpdated, start);
+            lastUpdated = Math.max(lastUpdated, start + chunk.rows.size() - 1);
+        }
+        return new int[] {firstUpdated, lastUpdated};
+    }
+
+    // Rows for one page (count < 0), or the query's row counts (rows == null)
+    private static final class Chunk {
+        final int page;
+        final CertificateColumns rows;
+        final boolean pageComplete;
+        final int count;
+        final int total;
+
+        Chunk(int page, CertificateColumns rows, boolean pageComplete) {
+            this.page = page;
+            this.rows = rows;
+            this.pageComplete = pageComplete;
+            this.count = -1;
+            this.total = -1;
+        }
+
+        Chunk(int count, int total) {
+            this.page = -1;
+            this.rows = null;
+            this.pageComplete = false;
+            this.count = count;
+            this.total = total;
+        }
+    }
+
+    private final class RefreshWorker extends SwingWorker<Void, Chunk> {
+        private final CertificateQuery q;
+        private final int gen;
+
+        RefreshWorker(CertificateQuery q, int gen) {
+            this.q = q;
+            this.gen = gen;
+        }
+
+        @Override
+        protected Void doInBackground() throws SQLException {
+            CertificateColumns head = fetch(q, 0, 0, FIRST_CHUNK);
+            publish(new Chunk(0, head, head.size() < FIRST_CHUNK));
+            if (isCancelled()) {
+                return null;
+            }
+
+            int count = repository.count(q);
+            int total = q.isFiltered() ? repository.count(CertificateQuery.ALL) : count;
+            publish(new Chunk(count, total));
+            if (head.size() < FIRST_CHUNK || isCancelled()) {
+                return null;
+            }
+
+            CertificateColumns rest = q.isKeysetOrder()
+                    ? fetch(q, head.lastId(), 0, PAGE_SIZE - FIRST_CHUNK)
+                    : fetch(q, 0, FIRST_CHUNK, PAGE_SIZE - FIRST_CHUNK);
+            publish(new Chunk(0, rest, true));
+
+            int lastId = rest.size() > 0 ? rest.lastId() : head.lastId();
+            boolean more = rest.size() == PAGE_SIZE - FIRST_CHUNK;
+            for (int p = 1; p <= PREFETCH_PAGES && more && !isCancelled(); p++) {
+                CertificateColumns page = q.isKeysetOrder()
+                        ? fetch(q, lastId, 0, PAGE_SIZE)
+                        : fetch(q, 0, p * PAGE_SIZE, PAGE_SIZE);
+                publish(new Chunk(p, page, true));
+                lastId = page.lastId();
+                more = page.size() == PAGE_SIZE;
+            }
+            return null;
+        }
+
+        // Applies everything published since the last call with one table event
+        @Override
+        protected void process(List<Chunk> chunks) {
+            if (gen != generation) {
+                return;
+            }
+            if (stale) {
+                replaceAll(chunks); // first rows of the new query: every row shown so far changes
+                return;
+            }
+            int oldCount = rowCount;
+            int[] updated = apply(chunks);
+            int firstUpdated = updated[0];
+            int lastUpdated = updated[1];
+
+            if (rowCount < oldCount) {
+                fireTableRowsDeleted(rowCount, oldCount - 1);
+            }
+            if (firstUpdated < Math.min(oldCount, rowCount)) {
+                fireTableRowsUpdated(firstUpdated, Math.min(lastUpdated, Math.min(oldCount, rowCount) - 1));
+            }
+            if (rowCount > oldCount) {
+                fireTableRowsInserted(oldCount, rowCount - 1);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (gen != generation || isCancelled()) {
+                return;
+            }
+            try {
+                get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // Let the pages the worker never delivered load on demand
+                for (int p = 0; p <= PREFETCH_PAGES; p++) {
+                    loading.remove(p);
+                }
+                if (stale) {
+                    rowCount = 0; // nothing of the new query arrived
+                    replaceAll(new ArrayList<>());
+                }
+                Throwable cause = e.getCause();
+                errorHandler.accept(cause instanceof Exception ? (Exception) cause : e);
+            }
+        }
+    }
+
+    // Takes deleted records out of the cached pages without a reload. Pages
+    // after the first affected one are dropped (their rows shifted up) and
+    // the short page is topped up from the database. Falls back to a full
+    // refresh when a deleted row is not cached, since its position is unknown.
+    public void removeById(int[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        Set<Integer> remove = new HashSet<>();
+        for (int id : ids) {
+            remove.add(id);
+        }
+        // Check that every id is cached before changing any page: a refresh
+        // keeps showing the pages until it has rows, so they must stay intact
+        int cached = 0;
+        for (CertificateColumns page : pages.values()) {
+            for (int r = 0; r < page.size(); r++) {
+                if (remove.contains(page.getId(r))) {
+                    cached++;
+                }
+            }
+        }
+        if (cached < remove.size()) {
+            refresh();
+            return;
+        }
+        // Former model row of every removed record; one pass per cached page
+        int[] rows = new int[remove.size()];
+        int[] found = {0};
+        for (Map.Entry<Integer, CertificateColumns> e : pages.entrySet()) {
+            int base = e.getKey() * PAGE_SIZE;
+            e.getValue().removeIds(remove, r -> {
+                if (found[0] < rows.length) {
+                    rows[found[0]++] = base + r;
+                }
+            });
+        }
+        Arrays.sort(rows);
+        int firstPage = rows[0] / PAGE_SIZE;
+        rowCount -= rows.length;
+        totalCount -= rows.length;
+
+        int keep = firstPage;
+        pages.keySet().removeIf(p -> p > keep);
+        lastIds.keySet().removeIf(p -> p >= keep);
+        loading.removeIf(p -> p > keep);
+        store(firstPage, pages.get(firstPage));
+
+        // One event per run of adjacent rows, last run first so the earlier
+        // indices still hold; the rest of the table is not repainted
+        for (int end = rows.length - 1; end >= 0; ) {
+            int start = end;
+            while (start > 0 && rows[start - 1] == rows[start] - 1) {
+                start--;
+            }
+            fireTableRowsDeleted(rows[start], rows[end]);
+            end = start - 1;
+        }
+        topUp(firstPage);
+    }
+
+    // Applies changes from the change log (see ChangeFeed) without reloading.
+    // Deleted rows go through removeById in any view. Only the default view
+    // (everything, newest first) can place other changes without asking the
+    // database: new records go on top, updated rows are rewritten where they
+    // are. A filtered or re-sorted view refreshes for those, since an insert
+    // or update can move a row or take it in or out of the result.
+    public void applyChanges(List<CertificateChange> changes) {
+        boolean refreshing = refreshWorker != null && !refreshWorker.isDone();
+        boolean defaultView = !query.isFiltered() && query.isKeysetOrder() && query.isDescending();
+        List<Integer> deleted = new ArrayList<>();
+        List<CertificateChange> written = new ArrayList<>();
+        for (CertificateChange c : changes) {
+            if (c.isDelete()) {
+                deleted.add(c.getId());
+            } else {
+                written.add(c);
+            }
+        }
+        // With the archive shown, a delete may be a record moving to the archive
+        if (refreshing || (!written.isEmpty() && !defaultView)
+                || (!deleted.isEmpty() && query.isIncludingArchive())) {
+            refresh();
+            return;
+        }
+        List<TransferCertificate> inserted = new ArrayList<>();
+        String[] values = new String[FIELDS.length];
+        for (CertificateChange c : written) {
+            if (!updateInPlace(c.getRecord(), values) && c.getOp() == CertificateChange.INSERT) {
+                inserted.add(c.getRecord());
+            }
+        }
+        if (!inserted.isEmpty()) {
+            insertAtTop(inserted);
+        }
+        if (!deleted.isEmpty()) {
+            removeById(deleted.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    // Rewrites the row if its page is cached; false when it is not there
+    private boolean updateInPlace(TransferCertificate tc, String[] values) {
+        for (Map.Entry<Integer, CertificateColumns> e : pages.entrySet()) {
+            int r = e.getValue().indexOf(tc.getId());
+            if (r >= 0) {
+                e.getValue().set(r, displayValues(tc, values));
+                int row = e.getKey() * PAGE_SIZE + r;
+                fireTableRowsUpdated(row, row);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // New ids are higher than any loaded, so in id-descending order they go
+    // first. Page 0 gets them in front; later pages have shifted and are
+    // dropped, to load again when scrolled to.
+    private void insertAtTop(List<TransferCertificate> records) {
+        if (records.size() >= PAGE_SIZE) {
+            refresh();
+            return;
+        }
+        records.sort((a, b) -> Integer.compare(b.getId(), a.getId()));
+        liveGeneration = ++generation; // page loads in flight have the old row positions
+        CertificateColumns oldFirst = pages.get(0);
+        pages.clear();
+        lastIds.clear();
+        loading.clear();
+        if (oldFirst != null) {
+            CertificateColumns first = new CertificateColumns(FIELDS.length, records.size() + oldFirst.size());
+            String[] values = new String[FIELDS.length];
+            for (TransferCertificate tc : records) {
+                first.append(tc.getId(), displayValues(tc, values));
+            }
+            first.trimPool();
+            first.appendAll(oldFirst);
+            first.truncate(PAGE_SIZE);
+            store(0, first);
+        }
+        rowCount += records.size();
+        totalCount += records.size();
+        fireTableRowsInserted(0, records.size() - 1);
+    }
+
+    public void refresh() {
+        setQuery(query);
+    }
+
+    // Rows in the whole table, ignoring the search filter
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public void close() {
+        if (refreshWorker != null) {
+            refreshWorker.cancel(false);
+        }
+        loader.shutdownNow();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    // Database column a grid column sorts by
+    public String getSortColumn(int column) {
+        return column == 0 ? "id" : TransferCertificate.COLUMNS[FIELDS[column - 1]];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    // null while the row's page is still loading
+    @Override
+    public Object getValueAt(int row, int column) {
+        CertificateColumns page = pages.get(row / PAGE_SIZE);
+        if (page == null) {
+            requestPage(row / PAGE_SIZE);
+            return null;
+        }
+        int i = row % PAGE_SIZE;
+        return i < page.size() ? page.getValue(i, column) : null;
+    }
+
+    // Full display row, loading its page on the calling thread if needed.
+    // For actions on a selection, where the row may have been evicted.
+    public Object[] getRow(int row) throws SQLException {
+        return page(row).getRow(row % PAGE_SIZE);
+    }
+
+    public int getIdAt(int row) throws SQLException {
+        return page(row).getId(row % PAGE_SIZE);
+    }
+
+    private CertificateColumns page(int row) throws SQLException {
+        int p = row / PAGE_SIZE;
+        CertificateColumns page = pages.get(p);
+        if (page == null || row % PAGE_SIZE >= page.size()) {
+            if (stale) {
+                throw new SQLException("The view is reloading; try again in a moment");
+            }
+            int[] anchor = keysetAnchor(p);
+            page = fetch(query, anchor[0], anchor[1], PAGE_SIZE);
+            store(p, page);
+        }
+        if (row % PAGE_SIZE >= page.size()) {
+            throw new SQLException("Row " + row + " no longer exists; refresh the view");
+        }
+        return page;
+    }
+
+    private void requestPage(int p) {
+        if (stale || !loading.add(p)) {
+            return; // while stale, the first chunk repaints every row anyway
+        }
+        int gen = generation;
+        int[] anchor = keysetAnchor(p);
+        CertificateQuery q = query;
+        loader.execute(() -> {
+            if (gen != liveGeneration) {
+                return; // superseded by a newer query before we got to it
+            }
+            try {
+                CertificateColumns page = fetch(q, anchor[0], anchor[1], PAGE_SIZE);
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation) {
+                        return;
+                    }
+                    loading.remove(p);
+                    store(p, page);
+                    int first = p * PAGE_SIZE;
+                    int last = Math.min(rowCount, first + PAGE_SIZE) - 1;
+                    if (first <= last) {
+                        fireTableRowsUpdated(first, last);
+                    }
+                });
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> {
+                    loading.remove(p);
+                    errorHandler.accept(e);
+                });
+            }
+        });
+    }
+
+    // Refills a page left short by removeById with the rows that followed it
+    private void topUp(int p) {
+        CertificateColumns page = pages.get(p);
+        int missing = page == null ? 0 : PAGE_SIZE - page.size();
+        if (missing <= 0) {
+            return;
+        }
+        int gen = generation;
+        CertificateQuery q = query;
+        // The deletes are committed, so offsets already reflect them
+        int afterId = q.isKeysetOrder() ? page.lastId() : 0;
+        int offset = q.isKeysetOrder() && afterId > 0 ? 0 : p * PAGE_SIZE + page.size();
+        loader.execute(() -> {
+            try {
+                CertificateColumns more = fetch(q, afterId, offset, missing);
+                SwingUtilities.invokeLater(() -> {
+                    CertificateColumns current = pages.get(p);
+                    if (gen != generation || current != page || more.size() == 0) {
+                        return;
+                    }
+                    int first = p * PAGE_SIZE + page.size();
+                    page.appendAll(more);
+                    store(p, page);
+                    fireTableRowsUpdated(first, Math.min(rowCount, first + more.size()) - 1);
+                });
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> errorHandler.accept(e));
+            }
+        });
+    }
+
+    // {afterId, offset} for page p: continue from the nearest earlier page
+    // whose last id is known, skipping any unknown pages in between
+    private int[] keysetAnchor(int p) {
+        if (p > 0 && query.isKeysetOrder()) {
+            Map.Entry<Integer, Integer> known = lastIds.floorEntry(p - 1);
+            if (known != null) {
+                return new int[] {known.getValue(), (p - known.getKey() - 1) * PAGE_SIZE};
+            }
+        }
+        return new int[] {0, p * PAGE_SIZE};
+    }
+
+    // Only full pages become keyset anchors: a short page is either the last
+    // one or waiting on topUp, and the rows after it are not settled yet
+    private void store(int p, CertificateColumns page) {
+        pages.put(p, page);
+        if (page.size() == PAGE_SIZE) {
+            lastIds.put(p, page.lastId());
+        } else {
+            lastIds.remove(p);
+        }
+    }
+
+    private CertificateColumns fetch(CertificateQuery q, int afterId, int offset, int limit) throws SQLException {
+        List<TransferCertificate> records = repository.page(q, afterId, offset, limit);
+        CertificateColumns page = new CertificateColumns(FIELDS.length, records.size());
+        String[] values = new String[FIELDS.length];
+        for (TransferCertificate tc : records) {
+            page.append(tc.getId(), displayValues(tc, values));
+        }
+        page.trimPool();
+        return page;
+    }
+
+    // Display values, with dates shown as dd/MM/yyyy
+    static Object[] toRow(TransferCertificate tc) {
+        String[] values = displayValues(tc, new String[FIELDS.length]);
+        Object[] row = new Object[COLUMN_NAMES.length];
+        row[0] = tc.getId();
+        System.arraycopy(values, 0, row, 1, values.length);
+        return row;
+    }
+
+    private static String[] displayValues(TransferCertificate tc, String[] values) {
+        for (int c = 0; c < FIELDS.length; c++) {
+            String v = tc.get(FIELDS[c]);
+            values[c] = CertificateDates.isDateField(FIELDS[c]) ? CertificateDates.display(v) : v;
+        }
+        return values;
+    }
+}
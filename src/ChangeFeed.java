@@ -0,0 +1,127 @@
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+// Follows change_log for one window. Each window keeps its own last-seen
+// sequence number and, every poll, reads only the entries after it, folded to
+// one change per record, and hands them to onChanges on the EDT. Writes made
+// by the window itself show up the same way (call poll() right after them),
+// as do writes from other windows and imports. When more than MAX_CHANGES
+// arrive at once, onReload runs instead: reloading is cheaper by then.
+final class ChangeFeed {
+
+    // Interval between polls, overridable with -Dtc.changes.pollMs
+    static final int DEFAULT_POLL_MS = Integer.getInteger("tc.changes.pollMs", 2000);
+    static final int MAX_CHANGES = 500;
+
+    private final TransferCertificateRepository repository;
+    private final Consumer<List<CertificateChange>> onChanges;
+    private final Runnable onReload;
+    private final Timer timer;
+    private long lastSeq = -1;
+    private boolean polling;
+    private boolean pollAgain;
+
+    ChangeFeed(TransferCertificateRepository repository, int pollMs,
+               Consumer<List<CertificateChange>> onChanges, Runnable onReload) {
+        this.repository = repository;
+        this.onChanges = onChanges;
+        this.onReload = onReload;
+        this.timer = new Timer(pollMs, e -> poll());
+    }
+
+    // Call before the window's first load, so nothing written in between is missed
+    void start() {
+        try {
+            lastSeq = repository.latestChangeSeq();
+        } catch (SQLException e) {
+            System.err.println("Change log unavailable: " + e.getMessage());
+        }
+        timer.start();
+    }
+
+    void stop() {
+        timer.stop();
+    }
+
+    // Reads new changes in the background; a poll requested while one is
+    // running is run right after it
+    void poll() {
+        if (polling) {
+            pollAgain = true;
+            return;
+        }
+        polling = true;
+        long since = lastSeq;
+        new SwingWorker<Batch, Void>() {
+            @Override
+            protected Batch doInBackground() throws SQLException {
+                if (since < 0) {
+                    return new Batch(repository.latestChangeSeq(), null);
+                }
+                List<CertificateChange> raw = repository.changesSince(since, MAX_CHANGES + 1);
+                if (raw.size() > MAX_CHANGES) {
+                    return new Batch(repository.latestChangeSeq(), null);
+                }
+                return new Batch(raw.isEmpty() ? since : raw.get(raw.size() - 1).getSeq(), fold(raw));
+            }
+
+            @Override
+            protected void done() {
+                polling = false;
+                try {
+                    Batch batch = get();
+                    boolean reload = since >= 0 && batch.changes == null;
+                    lastSeq = batch.seq;
+                    if (reload) {
+                        onReload.run();
+                    } else if (batch.changes != null && !batch.changes.isEmpty()) {
+                        onChanges.accept(batch.changes);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println("Error reading change log: " + e.getCause().getMessage());
+                }
+                if (pollAgain) {
+                    pollAgain = false;
+                    poll();
+                }
+            }
+        }.execute();
+    }
+
+    // New last-seen seq plus the changes; changes is null when the window should reload
+    private static final class Batch {
+        final long seq;
+        final List<CertificateChange> changes;
+
+        Batch(long seq, List<CertificateChange> changes) {
+            this.seq = seq;
+            this.changes = changes;
+        }
+    }
+
+    // One change per record, in the order each record first changed
+    static List<CertificateChange> fold(List<CertificateChange> raw) {
+        Map<Integer, CertificateChange> byId = new LinkedHashMap<>();
+        for (CertificateChange c : raw) {
+            CertificateChange earlier = byId.get(c.getId());
+            CertificateChange merged = earlier == null ? c : earlier.then(c);
+            if (merged == null) {
+                byId.remove(c.getId());
+            } else {
+                byId.put(c.getId(), merged);
+            }
+        }
+        return new ArrayList<>(byId.values());
+    }
+}
@@ -0,0 +1,160 @@
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+// Online backups of college.db and its yearly archives while the app keeps
+// running. VACUUM INTO writes a compacted copy from one read transaction on a
+// pooled reader: in WAL mode that is a consistent snapshot of the last
+// commit, and neither the writer thread nor the other readers wait on it.
+// A set is <dir>/college-<yyyyMMdd-HHmmss>.db plus tc_<year>-<same stamp>.db
+// for every CertificateArchive file (each written as .part and renamed once
+// complete); only the newest KEEP sets are kept. college.db is copied first:
+// a year archived meanwhile then shows up in both copies rather than in
+// neither. Set with -Dtc.backup.dir and -Dtc.backup.keep.
+final class DatabaseBackup {
+
+    private static final File DIR = new File(System.getProperty("tc.backup.dir", "backups"));
+    private static final int KEEP = Math.max(1, Integer.getInteger("tc.backup.keep", 10));
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern FILE_NAME = Pattern.compile("college-\\d{8}-\\d{6}\\.db");
+    private static final Pattern ARCHIVE_NAME = Pattern.compile("tc_\\d{4}-\\d{8}-\\d{6}\\.db");
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    private DatabaseBackup() {
+    }
+
+    // A finished set: the college.db copy, how many archives went with it,
+    // the size of the whole set and how long it took
+    static final class Snapshot {
+        final File file;
+        final int archives;
+        final long bytes;
+        final long millis;
+
+        Snapshot(File file, int archives, long bytes, long millis) {
+            this.file = file;
+            this.archives = archives;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+    }
+
+    // Takes a snapshot on a background thread; fails at once if one is already running
+    static CompletableFuture<Snapshot> start(DatabaseManager db) {
+        if (!running.compareAndSet(false, true)) {
+            CompletableFuture<Snapshot> busy = new CompletableFuture<>();
+            busy.completeExceptionally(new SQLException("A backup is already running"));
+            return busy;
+        }
+        CompletableFuture<Snapshot> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(snapshot(db));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                running.set(false);
+            }
+        }, "tc-db-backup");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    static Snapshot snapshot(DatabaseManager db) throws SQLException {
+        if (!DIR.isDirectory() && !DIR.mkdirs()) {
+            throw new SQLException("Cannot create backup directory " + DIR.getAbsolutePath());
+        }
+        String stamp = LocalDateTime.now().format(STAMP);
+        long start = System.nanoTime();
+        File file = new File(DIR, "college-" + stamp + ".db");
+        List<File> written = new ArrayList<>();
+        List<Integer> years = CertificateArchive.years();
+        long bytes = 0;
+        try {
+            copy(db, "main", 0, file);
+            written.add(file);
+            bytes += file.length();
+            for (int year : years) {
+                File archive = new File(DIR, "tc_" + year + "-" + stamp + ".db");
+                copy(db, CertificateArchive.SCHEMA, year, archive);
+                written.add(archive);
+                bytes += archive.length();
+            }
+        } catch (SQLException e) {
+            // A set without all its archives would restore with years missing
+            for (File partial : written) {
+                if (!partial.delete()) {
+                    System.err.println("Could not delete incomplete backup " + partial.getName());
+                }
+            }
+            throw e;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        rotate();
+        return new Snapshot(file, years.size(), bytes, millis);
+    }
+
+    // VACUUM INTO for main, or for the archive of year attached on the reader
+    private static void copy(DatabaseManager db, String schema, int year, File file) throws SQLException {
+        File part = new File(DIR, file.getName() + ".part");
+        // VACUUM INTO refuses to overwrite, so clear a leftover from a failed run
+        if (part.exists() && !part.delete()) {
+            throw new SQLException("Cannot remove stale " + part.getPath());
+        }
+        db.read(conn -> {
+            if (!"main".equals(schema)) {
+                CertificateArchive.use(conn, year);
+            }
+            try (PreparedStatement ps = conn.prepareStatement("VACUUM " + schema + " INTO ?")) {
+                ps.setString(1, part.getPath());
+                ps.execute();
+            }
+            return null;
+        });
+        if (!part.renameTo(file)) {
+            throw new SQLException("Cannot rename " + part.getPath() + " to " + file.getName());
+        }
+    }
+
+    // Deletes all but the newest KEEP sets, archives included
+    private static void rotate() {
+        List<String> snapshots = list();
+        String[] names = DIR.list();
+        for (String old : snapshots.subList(Math.min(KEEP, snapshots.size()), snapshots.size())) {
+            String suffix = old.substring("college".length()); // -<stamp>.db
+            for (String name : names == null ? new String[0] : names) {
+                if (name.equals(old) || (ARCHIVE_NAME.matcher(name).matches() && name.endsWith(suffix))) {
+                    if (!new File(DIR, name).delete()) {
+                        System.err.println("Could not delete old backup " + name);
+                    }
+                }
+            }
+        }
+    }
+
+    // college.db snapshot names, one per set, newest first (the timestamps sort by age)
+    static List<String> list() {
+        List<String> result = new ArrayList<>();
+        String[] names = DIR.list();
+        if (names != null) {
+            for (String name : names) {
+                if (FILE_NAME.matcher(name).matches()) {
+                    result.add(name);
+                }
+            }
+        }
+        result.sort(Collections.reverseOrder());
+        return result;
+    }
+}
@@ -0,0 +1,394 @@
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// App-wide access to college.db. One writer connection (SQLite only allows a
+// single writer anyway) and a small pool of read connections, all in WAL mode
+// so readers never wait on the writer. Connections stay open for the life of
+// the process - callers borrow them through read()/write() and must not close them.
+//
+// Every write runs on one writer thread fed by a bounded queue. The thread
+// takes whatever is queued and commits it as one transaction (group commit),
+// each task inside its own savepoint so a failing task is rolled back alone.
+// Under load many writes share one fsync, and no two writers ever contend
+// for the database lock. submit() returns a CompletableFuture, so the EDT
+// can write without waiting on disk; write() waits for the commit.
+public final class DatabaseManager {
+
+    // SQLite JDBC URL (file in the working directory, no username/password)
+    public static final String DB_URL = System.getProperty("tc.db.url", "jdbc:sqlite:college.db");
+
+    // How long a statement waits on a locked database before SQLITE_BUSY
+    private static final int BUSY_TIMEOUT_MS = Integer.getInteger("tc.db.busyTimeoutMs", 5000);
+    private static final int MAX_READERS = Integer.getInteger("tc.db.readers", 4);
+    // Writes waiting for the writer thread; submit() fails fast once it is full
+    private static final int WRITE_QUEUE_SIZE = Integer.getInteger("tc.db.writeQueue", 256);
+    // Most tasks committed together, and how long to wait for more after the first
+    private static final int MAX_GROUP = Integer.getInteger("tc.db.maxGroup", 64);
+    private static final int COMMIT_WINDOW_MS = Integer.getInteger("tc.db.commitWindowMs", 0);
+
+    private static DatabaseManager instance;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<Connection> idleReaders;
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final BlockingQueue<WriteTask<?>> writeQueue = new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE);
+    private final Thread writerThread;
+    private volatile boolean closing;
+    // User-facing reads and writes in progress (queued writes included) and
+    // when the last one finished; MaintenanceScheduler waits for a quiet spell
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile long lastActiveNanos = System.nanoTime();
+    private Connection writer;
+    private volatile boolean schemaReady;
+
+    // Work done against a borrowed connection
+    public interface SqlWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private static final class WriteTask<T> {
+        final SqlWork<T> work;
+        final boolean exclusive;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+
+        WriteTask(SqlWork<T> work, boolean exclusive) {
+            this.work = work;
+            this.exclusive = exclusive;
+        }
+
+        void run(Connection conn) throws SQLException {
+            result = work.run(conn);
+        }
+
+        void complete() {
+            future.complete(result);
+        }
+    }
+
+    private DatabaseManager() {
+        idleReaders = new ArrayBlockingQueue<>(MAX_READERS);
+        writerThread = new Thread(this::writeLoop, "tc-db-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public static synchronized DatabaseManager getInstance() {
+        if (instance == null) {
+            instance = new DatabaseManager();
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::shutdown, "db-shutdown"));
+            MaintenanceScheduler.start(instance);
+        }
+        return instance;
+    }
+
+    // Applies pending SchemaMigrations once per process. Called implicitly by
+    // read()/write(); call it directly to surface startup errors early.
+    public void ensureSchema() throws SQLException {
+        if (schemaReady) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (!schemaReady) {
+                SchemaMigrations.migrate(writerConnection());
+                schemaReady = true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Runs work on a pooled read connection (autocommit, WAL snapshot per statement)
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        begin();
+        try {
+            return readInBackground(work);
+        } finally {
+            end();
+        }
+    }
+
+    // read() for housekeeping (change polling, maintenance) that should not
+    // count as the database being in use
+    public <T> T readInBackground(SqlWork<T> work) throws SQLException {
+        ensureSchema();
+        Connection conn = borrowReader();
+        try {
+            return work.run(conn);
+        } finally {
+            idleReaders.offer(conn);
+        }
+    }
+
+    // Queues work for the writer thread. It runs atomically (in a savepoint)
+    // inside the next group transaction; the future completes after the
+    // commit, or exceptionally if the work, the commit or the queue fails.
+    public <T> CompletableFuture<T> submit(SqlWork<T> work) {
+        return enqueue(new WriteTask<>(work, false), true);
+    }
+
+    // For work that cannot run inside a transaction (ATTACH/DETACH, VACUUM):
+    // runs alone on the writer thread, between groups, with the connection in
+    // autocommit mode. The work commits any transactions it opens itself.
+    public <T> CompletableFuture<T> exclusive(SqlWork<T> work) {
+        return enqueue(new WriteTask<>(work, true), true);
+    }
+
+    // exclusive() for maintenance, which does not count as the database being in use
+    <T> CompletableFuture<T> exclusiveInBackground(SqlWork<T> work) {
+        return enqueue(new WriteTask<>(work, true), false);
+    }
+
+    // True when no user-facing read or write is running or queued, and none
+    // has finished within the last quietMillis
+    public boolean isIdle(long quietMillis) {
+        return active.get() == 0 && System.nanoTime() - lastActiveNanos >= quietMillis * 1_000_000L;
+    }
+
+    private void begin() {
+        active.incrementAndGet();
+    }
+
+    private void end() {
+        lastActiveNanos = System.nanoTime();
+        active.decrementAndGet();
+    }
+
+    private <T> CompletableFuture<T> enqueue(WriteTask<T> task, boolean tracked) {
+        if (tracked) {
+            begin();
+            task.future.whenComplete((result, error) -> end());
+        }
+        if (closing) {
+            task.future.completeExceptionally(new SQLException("Database is shutting down"));
+        } else if (!writeQueue.offer(task)) {
+            task.future.completeExceptionally(new SQLException("Database is busy: " + WRITE_QUEUE_SIZE + " writes queued"));
+        }
+        return task.future;
+    }
+
+    // Runs work as one atomic write and waits for it to commit. Calls made
+    // from inside a write (on the writer thread) join the running transaction.
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        if (Thread.currentThread() == writerThread || writeLock.isHeldByCurrentThread()) {
+            return work.run(writerConnection());
+        }
+        try {
+            return submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    private void writeLoop() {
+        List<WriteTask<?>> group = new ArrayList<>(MAX_GROUP);
+        while (true) {
+            try {
+                group.add(writeQueue.take());
+                if (COMMIT_WINDOW_MS > 0) {
+                    Thread.sleep(COMMIT_WINDOW_MS);
+                }
+            } catch (InterruptedException e) {
+                if (closing) {
+                    writeQueue.drainTo(group);
+                    runGroup(group);
+                    return;
+                }
+                continue;
+            }
+            writeQueue.drainTo(group, MAX_GROUP - group.size());
+            runGroup(group);
+            group.clear();
+        }
+    }
+
+    // Runs of ordinary tasks commit together; an exclusive task runs alone, in queue order
+    private void runGroup(List<WriteTask<?>> group) {
+        int start = 0;
+        for (int i = 0; i <= group.size(); i++) {
+            if (i == group.size() || group.get(i).exclusive) {
+                if (i > start) {
+                    commitGroup(group.subList(start, i));
+                }
+                if (i < group.size()) {
+                    runExclusive(group.get(i));
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    private void runExclusive(WriteTask<?> task) {
+        writeLock.lock();
+        try {
+            ensureSchema();
+            Connection conn = writerConnection();
+            try {
+                task.run(conn);
+                task.complete();
+            } finally {
+                if (!conn.getAutoCommit()) { // work failed mid-transaction
+                    rollbackQuietly(conn);
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            task.future.completeExceptionally(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // One transaction for the whole group; futures complete only after the commit
+    private void commitGroup(List<WriteTask<?>> group) {
+        List<WriteTask<?>> done = new ArrayList<>(group.size());
+        writeLock.lock();
+        try {
+            ensureSchema();
+            Connection conn = writerConnection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (WriteTask<?> task : group) {
+                    stmt.execute("SAVEPOINT write_task");
+                    try {
+                        task.run(conn);
+                        stmt.execute("RELEASE write_task");
+                        done.add(task);
+                    } catch (SQLException | RuntimeException e) {
+                        stmt.execute("ROLLBACK TO write_task");
+                        stmt.execute("RELEASE write_task");
+                        task.future.completeExceptionally(e);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(conn);
+                for (WriteTask<?> task : group) {
+                    task.future.completeExceptionally(e); // no-op for tasks already failed
+                }
+                return;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            for (WriteTask<?> task : done) {
+                task.complete();
+            }
+        } catch (SQLException e) {
+            for (WriteTask<?> task : group) {
+                task.future.completeExceptionally(e); // no-op for tasks already failed
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Connection borrowReader() throws SQLException {
+        Connection conn = idleReaders.poll();
+        if (conn != null) {
+            return conn;
+        }
+        if (openReaders.incrementAndGet() <= MAX_READERS) {
+            try {
+                return openConnection();
+            } catch (SQLException e) {
+                openReaders.decrementAndGet();
+                throw e;
+            }
+        }
+        openReaders.decrementAndGet();
+        try {
+            conn = idleReaders.poll(BUSY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+        if (conn == null) {
+            throw new SQLException("Timed out waiting for a database connection");
+        }
+        return conn;
+    }
+
+    private Connection writerConnection() throws SQLException {
+        if (writer == null || writer.isClosed()) {
+            writer = openConnection();
+        }
+        return writer;
+    }
+
+    private Connection openConnection() throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found on the classpath", e);
+        }
+        Connection conn = DriverManager.getConnection(DB_URL);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+        }
+        return conn;
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            System.err.println("Rollback failed: " + e.getMessage());
+        }
+    }
+
+    // Lets queued writes commit before the connections close
+    private void shutdown() {
+        closing = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join(BUSY_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Connection conn;
+        while ((conn = idleReaders.poll()) != null) {
+            closeQuietly(conn);
+        }
+        writeLock.lock();
+        try {
+            if (writer != null) {
+                closeQuietly(writer);
+                writer = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing database connection: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,352 @@
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+// Reads every sheet of an Excel file, in workbook order, as rows of strings.
+// .xlsx is parsed with SAX straight from the zip, so memory stays flat no
+// matter how many rows the sheets have. Legacy .xls still goes through HSSF.
+public final class ExcelRowReader {
+
+    // One sheet row, cells formatted the same way for both file formats
+    public static final class SheetRow {
+        public final int sheetIndex;         // 0-based position in the workbook
+        public final String sheetName;
+        public final int rowNumber;          // 1-based, as shown in Excel
+        public final String[] values;        // "" for missing cells
+        public final CellType firstCellType; // _NONE when column A is missing
+
+        SheetRow(int sheetIndex, String sheetName, int rowNumber, String[] values, CellType firstCellType) {
+            this.sheetIndex = sheetIndex;
+            this.sheetName = sheetName;
+            this.rowNumber = rowNumber;
+            this.values = values;
+            this.firstCellType = firstCellType;
+        }
+
+        // "Sheet1 row 12", for error reports
+        public String label() {
+            return sheetName + " row " + rowNumber;
+        }
+
+        public boolean isEmpty() {
+            for (String v : values) {
+                if (!v.trim().isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public interface RowHandler {
+        void row(SheetRow row) throws SQLException;
+    }
+
+    private final int columns;
+
+    public ExcelRowReader(int columns) {
+        this.columns = columns;
+    }
+
+    public void read(File file, RowHandler handler) throws IOException, SQLException {
+        if (file.getName().toLowerCase().endsWith(".xlsx")) {
+            readXlsx(file, handler);
+        } else {
+            readXls(file, handler);
+        }
+    }
+
+    private void readXls(File file, RowHandler handler) throws IOException, SQLException {
+        try (FileInputStream fis = new FileInputStream(file);
+             Workbook workbook = new HSSFWorkbook(fis)) {
+            for (int s = 0; s < workbook.getNumberOfSheets(); s++) {
+                Sheet sheet = workbook.getSheetAt(s);
+                for (Row row : sheet) {
+                    String[] values = new String[columns];
+                    for (int i = 0; i < columns; i++) {
+                        values[i] = cellValue(row.getCell(i));
+                    }
+                    Cell first = row.getCell(0);
+                    handler.row(new SheetRow(s, sheet.getSheetName(), row.getRowNum() + 1, values,
+                            first != null ? first.getCellType() : CellType._NONE));
+                }
+            }
+        }
+    }
+
+    private void readXlsx(File file, RowHandler handler) throws IOException, SQLException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            SharedStrings strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904;
+            try (InputStream workbookXml = reader.getWorkbookData()) {
+                date1904 = isDate1904(workbookXml);
+            }
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int index = 0; sheets.hasNext(); index++) {
+                try (InputStream sheetXml = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new SheetHandler(index, sheets.getSheetName(),
+                            strings, styles, date1904, handler));
+                    parser.parse(new InputSource(sheetXml));
+                }
+            }
+        } catch (SAXException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IOException("Invalid .xlsx sheet: " + e.getMessage(), e);
+        } catch (OpenXML4JException | ParserConfigurationException e) {
+            throw new IOException("Cannot open " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isDate1904(InputStream workbookXml) throws IOException, SAXException, ParserConfigurationException {
+        boolean[] result = {false};
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attrs) {
+                if ("workbookPr".equals(localName)) {
+                    String v = attrs.getValue("date1904");
+                    result[0] = "1".equals(v) || "true".equalsIgnoreCase(v);
+                }
+            }
+        });
+        parser.parse(new InputSource(workbookXml));
+        return result[0];
+    }
+
+    // Formats a usermodel cell (HSSF rows)
+    static String cellValue(Cell cell) {
+        if (cell == null) {
+            return "";
+        }
+
+        switch (cell.getCellType()) {
+            case STRING:
+                return cell.getStringCellValue();
+            case NUMERIC:
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    return CertificateDates.format(cell.getLocalDateTimeCellValue().toLocalDate());
+                } else {
+                    return numberValue(cell.getNumericCellValue());
+                }
+            case BOOLEAN:
+                return String.valueOf(cell.getBooleanCellValue());
+            case FORMULA:
+                try {
+                    return String.valueOf(cell.getNumericCellValue());
+                } catch (Exception e) {
+                    return cell.getStringCellValue();
+                }
+            default:
+                return "";
+        }
+    }
+
+    private static String numberValue(double numValue) {
+        // Whole numbers (register numbers, years) without the trailing ".0"
+        if (numValue == Math.floor(numValue)) {
+            return String.valueOf((long) numValue);
+        }
+        return String.valueOf(numValue);
+    }
+
+    // SAX handler for one worksheet part. Mirrors cellValue() for each <c> element.
+    private final class SheetHandler extends DefaultHandler {
+        private final int sheetIndex;
+        private final String sheetName;
+        private final SharedStrings strings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final RowHandler handler;
+        private final StringBuilder text = new StringBuilder();
+
+        private String[] values;
+        private CellType firstCellType;
+        private int rowNumber;
+        private int nextRowNumber = 1;
+
+        private int column;
+        private String cellKind;
+        private String cellStyle;
+        private boolean hasFormula;
+        private boolean inValue;
+
+        SheetHandler(int sheetIndex, String sheetName, SharedStrings strings, StylesTable styles,
+                     boolean date1904, RowHandler handler) {
+            this.sheetIndex = sheetIndex;
+            this.sheetName = sheetName;
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            switch (localName) {
+                case "row":
+                    String r = attrs.getValue("r");
+                    rowNumber = r != null ? Integer.parseInt(r) : nextRowNumber;
+                    nextRowNumber = rowNumber + 1;
+                    values = new String[columns];
+                    Arrays.fill(values, "");
+                    firstCellType = CellType._NONE;
+                    column = -1;
+                    break;
+                case "c":
+                    String ref = attrs.getValue("r");
+                    column = ref != null ? columnIndex(ref) : column + 1;
+                    cellKind = attrs.getValue("t");
+                    cellStyle = attrs.getValue("s");
+                    hasFormula = false;
+                    text.setLength(0);
+                    break;
+                case "f":
+                    hasFormula = true;
+                    break;
+                case "v":
+                case "t": // inline string text
+                    inValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "c":
+                    if (column >= 0 && column < columns) {
+                        if (column == 0) {
+                            firstCellType = cellType();
+                        }
+                        values[column] = formatCell(text.toString());
+                    }
+                    break;
+                case "row":
+                    try {
+                        handler.row(new SheetRow(sheetIndex, sheetName, rowNumber, values, firstCellType));
+                    } catch (SQLException e) {
+                        throw new SAXException(e);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private CellType cellType() {
+            if (hasFormula) {
+                return CellType.FORMULA;
+            }
+            if (cellKind == null || "n".equals(cellKind)) {
+                return CellType.NUMERIC;
+            }
+            switch (cellKind) {
+                case "s":
+                case "inlineStr":
+                case "str":
+                    return CellType.STRING;
+                case "b":
+                    return CellType.BOOLEAN;
+                case "e":
+                    return CellType.ERROR;
+                default:
+                    return CellType._NONE;
+            }
+        }
+
+        private String formatCell(String raw) {
+            if (raw.isEmpty()) {
+                return "";
+            }
+            String kind = cellKind != null ? cellKind : "n";
+            switch (kind) {
+                case "s":
+                    return strings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                case "inlineStr":
+                case "str":
+                    return raw;
+                case "b":
+                    return String.valueOf("1".equals(raw) || "true".equalsIgnoreCase(raw));
+                case "e":
+                    return "";
+                default:
+                    double d = Double.parseDouble(raw);
+                    if (hasFormula) {
+                        return String.valueOf(d);
+                    }
+                    if (isDateStyle()) {
+                        return CertificateDates.format(DateUtil.getLocalDateTime(d, date1904).toLocalDate());
+                    }
+                    return numberValue(d);
+            }
+        }
+
+        private boolean isDateStyle() {
+            if (cellStyle == null || styles == null) {
+                return false;
+            }
+            XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(cellStyle));
+            return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        }
+    }
+
+    // "AB12" -> 27
+    private static int columnIndex(String cellRef) {
+        int col = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char ch = cellRef.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                break;
+            }
+            col = col * 26 + (ch - 'A' + 1);
+        }
+        return col - 1;
+    }
+}
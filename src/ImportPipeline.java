@@ -0,0 +1,327 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.poi.ss.usermodel.CellType;
+
+// Excel import in three stages joined by bounded queues:
+//
+//   reader (1 thread)  ->  normalise/validate (N threads)  ->  ordering (caller)  ->  writer thread
+//
+// The reader only parses; trimming, date normalisation and dob_words
+// derivation run in parallel; the caller's thread puts rows back in order and
+// hands them to CertificateBatchWriter, which commits each chunk as its own
+// writer task so other saves are not held up behind the file. Full queues
+// block the stage feeding them, so a slow disk throttles parsing instead of
+// buffering the whole file. Rows are written in sheet order regardless of
+// which worker finished first; a permit per in-flight row also caps the
+// rows the writer holds back while waiting for a slow worker.
+public final class ImportPipeline {
+
+    // Normalise/validate threads, overridable with -Dtc.import.workers
+    public static final int DEFAULT_WORKERS = Integer.getInteger("tc.import.workers",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final int QUEUE_CAPACITY = Integer.getInteger("tc.import.queueSize", 1024);
+
+    // Queue entry; seq keeps sheet order through the parallel stage
+    private static final class Item {
+        static final Item END = new Item(-1, null, null, null);
+
+        final long seq;
+        final String source;
+        final String[] values;
+        final String error;
+
+        Item(long seq, String source, String[] values, String error) {
+            this.seq = seq;
+            this.source = source;
+            this.values = values;
+            this.error = error;
+        }
+    }
+
+    // Rows handled and time spent working vs. blocked on a queue
+    public static final class StageStats {
+        private final String name;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        public long getRows() { return rows.get(); }
+
+        public long getBusyMillis() { return busyNanos.get() / 1_000_000; }
+
+        public long getWaitMillis() { return waitNanos.get() / 1_000_000; }
+
+        // Throughput while working, i.e. what this stage could sustain on its own
+        public double getRowsPerSecond() {
+            long busy = busyNanos.get();
+            return busy == 0 ? 0 : rows.get() * 1_000_000_000.0 / busy;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d rows, busy %d ms, blocked %d ms, %.0f rows/s",
+                    name, getRows(), getBusyMillis(), getWaitMillis(), getRowsPerSecond());
+        }
+    }
+
+    public static final class Result {
+        private final CertificateBatchWriter writer;
+        private final List<StageStats> stages;
+
+        Result(CertificateBatchWriter writer, List<StageStats> stages) {
+            this.writer = writer;
+            this.stages = stages;
+        }
+
+        public int getInserted() { return writer.getInserted(); }
+
+        public int getFailed() { return writer.getFailed(); }
+
+        public List<String> getFailures() { return writer.getFailures(); }
+
+        public List<StageStats> getStages() { return stages; }
+
+        public String summary() { return writer.summary(); }
+
+        // Summary plus one line per stage; the stage with the least blocked time is the bottleneck
+        public String report() {
+            StringBuilder sb = new StringBuilder(summary());
+            for (StageStats s : stages) {
+                sb.append("\n  ").append(s);
+            }
+            return sb.toString();
+        }
+    }
+
+    private final TransferCertificateRepository repository;
+    private final int workers;
+
+    public ImportPipeline(TransferCertificateRepository repository, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be positive: " + workers);
+        }
+        this.repository = repository;
+        this.workers = workers;
+    }
+
+    // Imports every sheet of the file; blocks, so call it off the EDT. Rejected
+    // rows are reported in the result. Chunks commit one at a time, so after a
+    // read or database error the chunks before it stay imported.
+    public Result run(File file) throws IOException, SQLException {
+        BlockingQueue<Item> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Item> normalised = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        StageStats readStats = new StageStats("read");
+        StageStats normaliseStats = new StageStats("normalise x" + workers);
+        StageStats writeStats = new StageStats("write");
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(2 * QUEUE_CAPACITY);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 1, r -> {
+            Thread t = new Thread(r, "tc-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            pool.execute(() -> readStage(file, parsed, inFlight, readStats, failure));
+            for (int i = 0; i < workers; i++) {
+                pool.execute(() -> normaliseStage(parsed, normalised, normaliseStats));
+            }
+
+            CertificateBatchWriter writer = repository.batchWriter(CertificateBatchWriter.DEFAULT_CHUNK_SIZE);
+            writeStage(normalised, inFlight, writer, writeStats);
+            writer.finish();
+            rethrow(failure.get());
+            List<StageStats> stages = new ArrayList<>();
+            stages.add(readStats);
+            stages.add(normaliseStats);
+            stages.add(writeStats);
+            return new Result(writer, stages);
+        } catch (SQLException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow(); // unblocks producers if the writer gave up early
+        }
+    }
+
+    private void readStage(File file, BlockingQueue<Item> out, Semaphore inFlight, StageStats stats,
+                           AtomicReference<Exception> failure) {
+        ExcelRowReader reader = new ExcelRowReader(TransferCertificate.FIELD_COUNT);
+        int[] sheet = {-1};
+        long[] seq = {0};
+        long[] mark = {System.nanoTime()};
+        try {
+            reader.read(file, row -> {
+                boolean firstOfSheet = row.sheetIndex != sheet[0];
+                sheet[0] = row.sheetIndex;
+                if ((firstOfSheet && !isDataRow(row)) || row.isEmpty()) {
+                    return; // header or blank line
+                }
+                long now = System.nanoTime();
+                stats.busyNanos.addAndGet(now - mark[0]);
+                try {
+                    inFlight.acquire();
+                    out.put(new Item(seq[0]++, row.label(), row.values, null));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Import cancelled", e);
+                }
+                mark[0] = System.nanoTime();
+                stats.waitNanos.addAndGet(mark[0] - now);
+                stats.rows.incrementAndGet();
+            });
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            endOfStream(out, workers);
+        }
+    }
+
+    private void normaliseStage(BlockingQueue<Item> in, BlockingQueue<Item> out, StageStats stats) {
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                Item item = in.take();
+                if (item == Item.END) {
+                    break;
+                }
+                long got = System.nanoTime();
+                Item result;
+                try {
+                    result = normalise(item);
+                } catch (RuntimeException e) {
+                    // Still forward the seq, or the writer waits for it forever
+                    result = new Item(item.seq, item.source, null, "Could not read row: " + e);
+                }
+                long done = System.nanoTime();
+                out.put(result);
+                stats.waitNanos.addAndGet((got - start) + (System.nanoTime() - done));
+                stats.busyNanos.addAndGet(done - got);
+                stats.rows.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        endOfStream(out, 1);
+    }
+
+    // Drains the normalised queue in seq order until every worker has finished
+    private void writeStage(BlockingQueue<Item> in, Semaphore inFlight, CertificateBatchWriter batch,
+                            StageStats stats) throws SQLException {
+        Map<Long, Item> early = new HashMap<>();
+        long next = 0;
+        int finished = 0;
+        while (finished < workers) {
+            long start = System.nanoTime();
+            Item item = take(in);
+            long got = System.nanoTime();
+            stats.waitNanos.addAndGet(got - start);
+            if (item == Item.END) {
+                finished++;
+                continue;
+            }
+            early.put(item.seq, item);
+            for (Item ready; (ready = early.remove(next)) != null; next++) {
+                if (ready.error != null) {
+                    batch.reject(ready.source, ready.error);
+                } else {
+                    batch.add(ready.source, new TransferCertificate(0, ready.values));
+                }
+                inFlight.release();
+                stats.rows.incrementAndGet();
+            }
+            stats.busyNanos.addAndGet(System.nanoTime() - got);
+        }
+    }
+
+    // Trims every field, rewrites dates in storage form (rejecting the row if
+    // one is not a date) and fills dob_words from dob when the sheet left it blank
+    static Item normalise(Item item) {
+        String[] values = item.values;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim();
+        }
+        if (values[TransferCertificate.STUDENT_NAME].isEmpty()) {
+            return new Item(item.seq, item.source, null, "Student name is empty");
+        }
+        try {
+            for (int column : CertificateDates.FIELDS) {
+                values[column] = CertificateDates.toStorage(TransferCertificate.COLUMNS[column], values[column]);
+            }
+        } catch (IllegalArgumentException e) {
+            return new Item(item.seq, item.source, null, e.getMessage());
+        }
+        if (values[TransferCertificate.DOB_WORDS].isEmpty()) {
+            LocalDate dob = CertificateDates.parse(values[TransferCertificate.DOB]);
+            if (dob != null) {
+                values[TransferCertificate.DOB_WORDS] = CertificateDates.toWords(dob);
+            }
+        }
+        return item;
+    }
+
+    // First-row heuristic: a text cell A mentioning "student" or containing digits is a header
+    static boolean isDataRow(ExcelRowReader.SheetRow firstRow) {
+        if (firstRow.firstCellType == CellType.STRING) {
+            String firstCellValue = firstRow.values[0].toLowerCase();
+            return !firstCellValue.contains("student") && !firstCellValue.matches(".*[0-9].*");
+        }
+        // Not a string, probably data
+        return firstRow.firstCellType != CellType._NONE;
+    }
+
+    private static Item take(BlockingQueue<Item> queue) throws SQLException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Import cancelled", e);
+        }
+    }
+
+    // One END marker per downstream consumer
+    private static void endOfStream(BlockingQueue<Item> queue, int consumers) {
+        try {
+            for (int i = 0; i < consumers; i++) {
+                queue.put(Item.END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void rethrow(Exception e) throws SQLException {
+        if (e == null) {
+            return;
+        }
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        }
+        throw new SQLException("Import failed: " + e.getMessage(), e);
+    }
+}
@@ -0,0 +1,254 @@
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps college.db healthy in the background: ANALYZE (so the planner has
+// statistics), incremental vacuum (returns pages freed by deletes and
+// autosave rewrites to the filesystem) and quick_check. Once a run is due
+// (every INTERVAL_HOURS, tracked in maintenance_log so restarts don't reset
+// it) it waits until DatabaseManager has seen no user-facing read or write
+// for IDLE_MS, and re-checks that before every step: each step is a short
+// task of its own, so a search or save arriving mid-run waits for at most
+// one step and the rest of the run is left for the next quiet spell. Every
+// step is recorded in maintenance_log with page counts before and after.
+// Incremental vacuum needs auto_vacuum=INCREMENTAL, which an existing file
+// only gets from a full VACUUM; that rewrites the whole file and blocks the
+// writer meanwhile, so it is never run from here but started by the user
+// (Tools > Compact Database, see compact()).
+final class MaintenanceScheduler {
+
+    private static final long CHECK_SECONDS = Long.getLong("tc.maintenance.checkSec", 60);
+    private static final long IDLE_MS = Long.getLong("tc.maintenance.idleSec", 120) * 1000;
+    private static final long INTERVAL_HOURS = Long.getLong("tc.maintenance.intervalHours", 24);
+    // Pages freed per incremental_vacuum step
+    private static final int VACUUM_STEP_PAGES = 512;
+    // Rows sampled per index by ANALYZE; keeps it quick on large tables
+    private static final int ANALYSIS_LIMIT = 1000;
+
+    private static final String LAST_RUN_SQL =
+            "SELECT CAST(strftime('%s', MAX(started_at)) AS INTEGER) FROM maintenance_log WHERE task = 'quick_check'";
+    private static final String LOG_SQL = "INSERT INTO maintenance_log (task, millis, page_size, pages_before, " +
+            "pages_after, free_before, free_after, result) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static MaintenanceScheduler instance;
+
+    private final DatabaseManager db;
+    private final ScheduledExecutorService timer;
+    private long lastRunSeconds = -1;
+
+    private MaintenanceScheduler(DatabaseManager db) {
+        this.db = db;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tc-db-maintenance");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    // Disabled with -Dtc.maintenance.intervalHours=0
+    static synchronized void start(DatabaseManager db) {
+        if (instance != null || INTERVAL_HOURS <= 0) {
+            return;
+        }
+        instance = new MaintenanceScheduler(db);
+        instance.timer.scheduleWithFixedDelay(instance::tick, CHECK_SECONDS, CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void tick() {
+        try {
+            if (db.isIdle(IDLE_MS) && isDue()) {
+                runAll();
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Database maintenance failed: " + e.getMessage());
+        }
+    }
+
+    private boolean isDue() throws SQLException {
+        if (lastRunSeconds < 0) {
+            lastRunSeconds = db.readInBackground(conn -> {
+                try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(LAST_RUN_SQL)) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+        }
+        return System.currentTimeMillis() / 1000 - lastRunSeconds >= INTERVAL_HOURS * 3600;
+    }
+
+    // Stops early, without recording the run as done, when the database gets busy
+    private void runAll() throws SQLException {
+        if (!step("analyze", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+                stmt.execute("ANALYZE");
+            }
+            return "ok";
+        })) {
+            return;
+        }
+        if (!vacuum()) {
+            return;
+        }
+        // Read-only, so it runs on a reader and leaves the writer free
+        long start = System.nanoTime();
+        Pages before = db.readInBackground(MaintenanceScheduler::pages);
+        String result = db.readInBackground(MaintenanceScheduler::quickCheck);
+        log("quick_check", start, before, before, result);
+        if (!"ok".equals(result)) {
+            System.err.println("Database quick_check reported problems: " + result);
+        }
+        lastRunSeconds = System.currentTimeMillis() / 1000;
+    }
+
+    // Full VACUUM on the writer thread, turning on incremental auto_vacuum
+    // first so the scheduler can keep the file compact from then on. Blocks
+    // every write until done; only for an explicit user request.
+    static CompletableFuture<String> compact(DatabaseManager db) {
+        return db.exclusive(conn -> {
+            long start = System.nanoTime();
+            Pages before = pages(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+            }
+            Pages after = pages(conn);
+            record(conn, "vacuum", start, before, after, "ok");
+            return String.format("Database compacted from %d KB to %d KB",
+                    before.bytes() / 1024, after.bytes() / 1024);
+        });
+    }
+
+    // Frees pages in small steps until none are left or a user needs the
+    // database. Skipped until compact() has turned incremental mode on.
+    private boolean vacuum() throws SQLException {
+        int mode = db.readInBackground(conn -> pragma(conn, "auto_vacuum"));
+        if (mode != 2) {
+            return true;
+        }
+        long start = System.nanoTime();
+        Pages before = db.readInBackground(MaintenanceScheduler::pages);
+        Pages now = before;
+        long lastFree = Long.MAX_VALUE;
+        while (now.free > 0 && now.free < lastFree) {
+            if (!db.isIdle(IDLE_MS)) {
+                log("incremental_vacuum", start, before, now, "interrupted: database in use");
+                return false;
+            }
+            lastFree = now.free;
+            now = await(db.exclusiveInBackground(conn -> {
+                // Each row stepped frees one page, so read them all
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")")) {
+                    while (rs.next()) {
+                        // nothing to read
+                    }
+                }
+                return pages(conn);
+            }));
+        }
+        if (now != before) {
+            log("incremental_vacuum", start, before, now, "ok");
+        }
+        return true;
+    }
+
+    // Runs one task on the writer thread if the database is still quiet, and records it
+    private boolean step(String task, DatabaseManager.SqlWork<String> work) throws SQLException {
+        if (!db.isIdle(IDLE_MS)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        await(db.exclusiveInBackground(conn -> {
+            Pages before = pages(conn);
+            String result = work.run(conn);
+            record(conn, task, start, before, pages(conn), result);
+            return null;
+        }));
+        return true;
+    }
+
+    private void log(String task, long startNanos, Pages before, Pages after, String result) throws SQLException {
+        await(db.exclusiveInBackground(conn -> {
+            record(conn, task, startNanos, before, after, result);
+            return null;
+        }));
+    }
+
+    private static void record(Connection conn, String task, long startNanos, Pages before, Pages after,
+                               String result) throws SQLException {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        try (PreparedStatement ps = conn.prepareStatement(LOG_SQL)) {
+            ps.setString(1, task);
+            ps.setLong(2, millis);
+            ps.setInt(3, before.pageSize);
+            ps.setLong(4, before.total);
+            ps.setLong(5, after.total);
+            ps.setLong(6, before.free);
+            ps.setLong(7, after.free);
+            ps.setString(8, result);
+            ps.executeUpdate();
+        }
+        System.out.println(String.format("Maintenance %s: %s in %d ms, %d -> %d KB (%d -> %d free pages)",
+                task, result, millis, before.bytes() / 1024, after.bytes() / 1024, before.free, after.free));
+    }
+
+    private static String quickCheck(Connection conn) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA quick_check(20)")) {
+            while (rs.next()) {
+                problems.add(rs.getString(1));
+            }
+        }
+        return String.join("; ", problems);
+    }
+
+    // Page size and the file's total and free pages
+    private static final class Pages {
+        final int pageSize;
+        final long total;
+        final long free;
+
+        Pages(int pageSize, long total, long free) {
+            this.pageSize = pageSize;
+            this.total = total;
+            this.free = free;
+        }
+
+        long bytes() {
+            return (long) pageSize * total;
+        }
+    }
+
+    private static Pages pages(Connection conn) throws SQLException {
+        return new Pages(pragma(conn, "page_size"), pragma(conn, "page_count"), pragma(conn, "freelist_count"));
+    }
+
+    private static int pragma(Connection conn, String name) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during database maintenance", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Size-bounded LRU of records by id, in front of the repository's lookups,
+// so opening, viewing and printing the same student again does not go back
+// to SQLite. Register numbers and student names map to the latest record's
+// id only while that record is cached. TransferCertificateRepository
+// invalidates entries after each write commits; a read that was in flight
+// across such a write is not cached (see generation()).
+final class RecordCache {
+
+    // Records kept, overridable with -Dtc.cache.records
+    static final int DEFAULT_CAPACITY = Integer.getInteger("tc.cache.records", 256);
+
+    private final int capacity;
+    private final LinkedHashMap<Integer, TransferCertificate> byId;
+    private final Map<String, Integer> latestByRegisterNo = new HashMap<>();
+    private final Map<String, Integer> latestByName = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long generation;
+
+    RecordCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.byId = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // Bumped by every invalidation; pass the value read before a lookup to put()
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized TransferCertificate get(int id) {
+        return count(byId.get(id));
+    }
+
+    // Latest record with this register no, if it is cached
+    synchronized TransferCertificate getByRegisterNo(String registerNo) {
+        Integer id = latestByRegisterNo.get(registerNo);
+        return count(id == null ? null : byId.get(id));
+    }
+
+    synchronized TransferCertificate getByName(String studentName) {
+        Integer id = latestByName.get(studentName);
+        return count(id == null ? null : byId.get(id));
+    }
+
+    // Caches a record read by id; ignored when something was invalidated since generation
+    synchronized void put(TransferCertificate tc, long generation) {
+        if (tc == null || generation != this.generation) {
+            return;
+        }
+        // Any write to this id since generation would have bumped it, so a
+        // cached entry for the id holds the same values and keeps its keys
+        byId.put(tc.getId(), tc);
+        if (byId.size() > capacity) {
+            Map.Entry<Integer, TransferCertificate> eldest = byId.entrySet().iterator().next();
+            byId.remove(eldest.getKey());
+            unlinkKeys(eldest.getValue());
+        }
+    }
+
+    // Caches the result of a latest-by-register-no lookup
+    synchronized void putLatestByRegisterNo(String registerNo, TransferCertificate tc, long generation) {
+        put(tc, generation);
+        if (tc != null && byId.get(tc.getId()) == tc) {
+            latestByRegisterNo.put(registerNo, tc.getId());
+        }
+    }
+
+    synchronized void putLatestByName(String studentName, TransferCertificate tc, long generation) {
+        put(tc, generation);
+        if (tc != null && byId.get(tc.getId()) == tc) {
+            latestByName.put(studentName, tc.getId());
+        }
+    }
+
+    // After an update or delete of these ids
+    synchronized void invalidate(int... ids) {
+        generation++;
+        for (int id : ids) {
+            TransferCertificate old = byId.remove(id);
+            if (old != null) {
+                unlinkKeys(old);
+            }
+        }
+    }
+
+    // After an insert or update: the written record may now be the latest for its keys
+    synchronized void invalidateKeys(TransferCertificate written) {
+        generation++;
+        latestByRegisterNo.remove(written.getRegisterNo());
+        latestByName.remove(written.getStudentName());
+    }
+
+    // After writes that touch unknown rows (imports, bulk deletes, archiving)
+    synchronized void clear() {
+        generation++;
+        byId.clear();
+        latestByRegisterNo.clear();
+        latestByName.clear();
+    }
+
+    long getHits() { return hits.get(); }
+
+    long getMisses() { return misses.get(); }
+
+    synchronized int size() {
+        return byId.size();
+    }
+
+    @Override
+    public String toString() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return String.format("Record cache: %d/%d records, %d hits, %d misses (%.0f%% hit rate)",
+                size(), capacity, h, total - h, total == 0 ? 0.0 : 100.0 * h / total);
+    }
+
+    private TransferCertificate count(TransferCertificate tc) {
+        (tc != null ? hits : misses).incrementAndGet();
+        return tc;
+    }
+
+    // Drops the secondary keys that point at this record
+    private void unlinkKeys(TransferCertificate tc) {
+        latestByRegisterNo.remove(tc.getRegisterNo(), tc.getId());
+        latestByName.remove(tc.getStudentName(), tc.getId());
+    }
+}
@@ -0,0 +1,257 @@
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ordered, versioned schema changes for college.db. Each migration runs once,
+// in its own transaction, and is recorded in schema_version. Append new
+// migrations to the end of MIGRATIONS - never edit or reorder applied ones.
+public final class SchemaMigrations {
+
+    interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    // Columns indexed by tc_search, in index column order
+    static final String[] SEARCH_COLUMNS = {
+        "student_name", "register_no", "father_name", "umis_no", "serial_no", "course"
+    };
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        add(1, "Create transfer_certificates", sql(
+            "CREATE TABLE IF NOT EXISTS transfer_certificates (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "student_name TEXT," +
+                "register_no TEXT," +
+                "serial_no TEXT," +
+                "father_name TEXT," +
+                "dob TEXT," +
+                "dob_words TEXT," +
+                "nationality TEXT," +
+                "religion TEXT," +
+                "caste TEXT," +
+                "gender TEXT," +
+                "admission_date TEXT," +
+                "course TEXT," +
+                "games TEXT," +
+                "ncc TEXT," +
+                "fee_concession TEXT," +
+                "result TEXT," +
+                "leaving_date TEXT," +
+                "class_leaving TEXT," +
+                "qualified TEXT," +
+                "reason TEXT," +
+                "issue_date TEXT," +
+                "conduct TEXT," +
+                "remarks TEXT," +
+                "umis_no TEXT," +
+                "created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")"));
+
+        // Lookup columns. Every index implicitly ends in id, so
+        // "WHERE student_name = ? ORDER BY id DESC LIMIT 1" is a single seek.
+        add(2, "Secondary indexes for lookups", sql(
+            "CREATE INDEX IF NOT EXISTS idx_tc_student_name ON transfer_certificates(student_name)",
+            "CREATE INDEX IF NOT EXISTS idx_tc_register_no ON transfer_certificates(register_no)",
+            "CREATE INDEX IF NOT EXISTS idx_tc_umis_no ON transfer_certificates(umis_no)",
+            "CREATE INDEX IF NOT EXISTS idx_tc_serial_no ON transfer_certificates(serial_no)",
+            "CREATE INDEX IF NOT EXISTS idx_tc_issue_date ON transfer_certificates(issue_date)",
+            "ANALYZE"));
+
+        // Full-text index for the search boxes. Contentless (content=''): it
+        // stores only tokens and rowids, which join back to transfer_certificates.
+        // A contentless table cannot read old values itself, so the triggers
+        // pass them to the 'delete' command.
+        String cols = String.join(", ", SEARCH_COLUMNS);
+        add(3, "Full-text search index", sql(
+            "CREATE VIRTUAL TABLE IF NOT EXISTS tc_search USING fts5(" + cols + ", " +
+                "content='', tokenize='unicode61 remove_diacritics 2')",
+            "CREATE TRIGGER IF NOT EXISTS tc_search_ai AFTER INSERT ON transfer_certificates BEGIN " +
+                "INSERT INTO tc_search(rowid, " + cols + ") VALUES (new.id, " + prefixed("new.") + "); END",
+            "CREATE TRIGGER IF NOT EXISTS tc_search_ad AFTER DELETE ON transfer_certificates BEGIN " +
+                "INSERT INTO tc_search(tc_search, rowid, " + cols + ") VALUES ('delete', old.id, " + prefixed("old.") + "); END",
+            "CREATE TRIGGER IF NOT EXISTS tc_search_au AFTER UPDATE OF " + cols + " ON transfer_certificates BEGIN " +
+                "INSERT INTO tc_search(tc_search, rowid, " + cols + ") VALUES ('delete', old.id, " + prefixed("old.") + "); " +
+                "INSERT INTO tc_search(rowid, " + cols + ") VALUES (new.id, " + prefixed("new.") + "); END",
+            "INSERT INTO tc_search(rowid, " + cols + ") SELECT id, " + cols + " FROM transfer_certificates",
+            "INSERT INTO tc_search(tc_search) VALUES ('optimize')"));
+
+        // Dates were free text in mixed dd-MM-yyyy / yyyy-MM-dd spellings.
+        // Rewrites every recognised date as yyyy-MM-dd; text that is not a
+        // date is left untouched (and reported) rather than lost.
+        add(4, "Store dates as ISO-8601", SchemaMigrations::isoDates);
+
+        // Range filters in the View window (status, admission year); issue_date
+        // is already indexed by migration 2
+        add(5, "Indexes for status and date filters", sql(
+            "CREATE INDEX IF NOT EXISTS idx_tc_admission_date ON transfer_certificates(admission_date)",
+            "CREATE INDEX IF NOT EXISTS idx_tc_leaving_date ON transfer_certificates(leaving_date)",
+            "ANALYZE"));
+
+        // One row per insert/update/delete, written by triggers so imports and
+        // every window are covered. AUTOINCREMENT keeps seq increasing and
+        // never reused; each window polls for seq > the last one it applied
+        // (see ChangeFeed).
+        add(6, "Change log for incremental refresh", sql(
+            "CREATE TABLE IF NOT EXISTS change_log (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "record_id INTEGER NOT NULL," +
+                "op TEXT NOT NULL CHECK (op IN ('I', 'U', 'D'))," +
+                "changed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
+            "CREATE TRIGGER IF NOT EXISTS tc_log_ai AFTER INSERT ON transfer_certificates BEGIN " +
+                "INSERT INTO change_log (record_id, op) VALUES (new.id, 'I'); END",
+            "CREATE TRIGGER IF NOT EXISTS tc_log_au AFTER UPDATE ON transfer_certificates BEGIN " +
+                "INSERT INTO change_log (record_id, op) VALUES (new.id, 'U'); END",
+            "CREATE TRIGGER IF NOT EXISTS tc_log_ad AFTER DELETE ON transfer_certificates BEGIN " +
+                "INSERT INTO change_log (record_id, op) VALUES (old.id, 'D'); END"));
+
+        // One row per MaintenanceScheduler task, with the file's page counts
+        // before and after (size = pages * page_size)
+        add(7, "Maintenance log", sql(
+            "CREATE TABLE IF NOT EXISTS maintenance_log (" +
+                "id INTEGER PRIMARY KEY," +
+                "task TEXT NOT NULL," +
+                "started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "millis INTEGER NOT NULL," +
+                "page_size INTEGER NOT NULL," +
+                "pages_before INTEGER NOT NULL," +
+                "pages_after INTEGER NOT NULL," +
+                "free_before INTEGER NOT NULL," +
+                "free_after INTEGER NOT NULL," +
+                "result TEXT)"));
+    }
+
+    private SchemaMigrations() {
+    }
+
+    private static void add(int version, String description, Step step) {
+        if (!MIGRATIONS.isEmpty() && MIGRATIONS.get(MIGRATIONS.size() - 1).version >= version) {
+            throw new IllegalStateException("Migrations must be added in increasing version order: " + version);
+        }
+        MIGRATIONS.add(new Migration(version, description, step));
+    }
+
+    private static Step sql(String... statements) {
+        return conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String s : statements) {
+                    stmt.execute(s);
+                }
+            }
+        };
+    }
+
+    // Tables of a yearly archive file attached as schema: the same columns as
+    // transfer_certificates (ids are kept, so no AUTOINCREMENT) and its own
+    // tc_search index, so archived rows are searched the same way. Archives
+    // are only ever inserted into or deleted from.
+    static void createArchiveSchema(Connection conn, String schema) throws SQLException {
+        String cols = String.join(", ", SEARCH_COLUMNS);
+        StringBuilder table = new StringBuilder("CREATE TABLE IF NOT EXISTS " + schema + ".transfer_certificates (id INTEGER PRIMARY KEY");
+        for (String column : TransferCertificate.COLUMNS) {
+            table.append(", ").append(column).append(" TEXT");
+        }
+        table.append(", created_date TIMESTAMP)");
+        sql(table.toString(),
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + schema + ".tc_search USING fts5(" + cols + ", " +
+                "content='', tokenize='unicode61 remove_diacritics 2')",
+            "CREATE TRIGGER IF NOT EXISTS " + schema + ".tc_search_ai AFTER INSERT ON transfer_certificates BEGIN " +
+                "INSERT INTO tc_search(rowid, " + cols + ") VALUES (new.id, " + prefixed("new.") + "); END",
+            "CREATE TRIGGER IF NOT EXISTS " + schema + ".tc_search_ad AFTER DELETE ON transfer_certificates BEGIN " +
+                "INSERT INTO tc_search(tc_search, rowid, " + cols + ") VALUES ('delete', old.id, " + prefixed("old.") + "); END"
+        ).apply(conn);
+    }
+
+    private static void isoDates(Connection conn) throws SQLException {
+        int rewritten = 0;
+        int unparsed = 0;
+        for (int field : CertificateDates.FIELDS) {
+            String column = TransferCertificate.COLUMNS[field];
+            try (Statement select = conn.createStatement();
+                 ResultSet rs = select.executeQuery("SELECT id, " + column + " FROM transfer_certificates " +
+                     "WHERE " + column + " <> '' AND " + column + " NOT GLOB '[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9]'");
+                 PreparedStatement update = conn.prepareStatement(
+                     "UPDATE transfer_certificates SET " + column + " = ? WHERE id = ?")) {
+                while (rs.next()) {
+                    LocalDate date = CertificateDates.parse(rs.getString(2));
+                    if (date == null) {
+                        unparsed++;
+                        continue;
+                    }
+                    update.setString(1, CertificateDates.format(date));
+                    update.setInt(2, rs.getInt(1));
+                    update.addBatch();
+                    rewritten++;
+                }
+                update.executeBatch();
+            }
+        }
+        System.out.println("Rewrote " + rewritten + " dates as yyyy-MM-dd; left " + unparsed + " values that are not dates");
+    }
+
+    // "new.a, new.b, ..." over SEARCH_COLUMNS
+    private static String prefixed(String prefix) {
+        StringBuilder sb = new StringBuilder();
+        for (String c : SEARCH_COLUMNS) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(prefix).append(c);
+        }
+        return sb.toString();
+    }
+
+    // Brings the database up to the latest version. conn must be in autocommit mode.
+    static void migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INTEGER PRIMARY KEY," +
+                "description TEXT NOT NULL," +
+                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        int current = currentVersion(conn);
+        for (Migration m : MIGRATIONS) {
+            if (m.version <= current) {
+                continue;
+            }
+            conn.setAutoCommit(false);
+            try {
+                m.step.apply(conn);
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    ps.setInt(1, m.version);
+                    ps.setString(2, m.description);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                System.out.println("Applied schema migration " + m.version + ": " + m.description);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration " + m.version + " (" + m.description + ") failed: "
+                        + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+// Debounces search-as-you-type. Each keystroke restarts the timer; the
+// action runs once on the EDT, with only the latest text, after the user has
+// paused for the debounce window. Repeats of the text last applied are
+// skipped. The action should hand the real work to a background loader that
+// drops superseded results (as CertificateTableModel.setQuery does).
+final class SearchScheduler {
+
+    // Pause before searching, overridable with -Dtc.search.debounceMs
+    static final int DEFAULT_DEBOUNCE_MS = Integer.getInteger("tc.search.debounceMs", 250);
+
+    private final Timer timer;
+    private final Consumer<String> action;
+    private String pending;
+    private String applied;
+
+    SearchScheduler(int debounceMs, Consumer<String> action) {
+        this.action = action;
+        this.timer = new Timer(debounceMs, e -> fire());
+        this.timer.setRepeats(false);
+    }
+
+    void schedule(String text) {
+        pending = text;
+        timer.restart();
+    }
+
+    // Runs a pending search now (e.g. on Enter)
+    void flush() {
+        timer.stop();
+        fire();
+    }
+
+    void cancel() {
+        timer.stop();
+        pending = null;
+    }
+
+    // Forget the last applied text so the next schedule always runs
+    void reset() {
+        applied = null;
+    }
+
+    private void fire() {
+        String text = pending;
+        pending = null;
+        if (text == null || text.equals(applied)) {
+            return;
+        }
+        applied = text;
+        action.accept(text);
+    }
+}
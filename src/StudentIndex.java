@@ -0,0 +1,154 @@
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// In-memory prefix index for the form's student selector. Keys are the
+// lower-cased student name (also from each later word, so "kumar" finds
+// "R. KUMAR"), register number and UMIS number; each key points at the
+// student name the selector loads and the record id it came from. Kept as
+// parallel arrays sorted by key, so a lookup is a binary search plus a short
+// scan. Not thread-safe: build it anywhere, then use it from the EDT only.
+final class StudentIndex {
+
+    private String[] keys;
+    private String[] names;
+    private int[] ids;
+    private int size;
+
+    private StudentIndex(int capacity) {
+        keys = new String[Math.max(16, capacity)];
+        names = new String[keys.length];
+        ids = new int[keys.length];
+    }
+
+    static StudentIndex empty() {
+        return new StudentIndex(16);
+    }
+
+    // rows are {id, student_name, register_no, umis_no}; sorts once instead of inserting one by one
+    static StudentIndex build(List<String[]> rows) {
+        List<String[]> entries = new ArrayList<>(rows.size() * 3);
+        for (String[] row : rows) {
+            forEachKey(row[1], row[2], row[3], key -> entries.add(new String[] {key, row[1], row[0]}));
+        }
+        entries.sort((a, b) -> compare(a[0], a[1], b[0], b[1]));
+        StudentIndex index = new StudentIndex(entries.size());
+        for (String[] e : entries) {
+            index.keys[index.size] = e[0];
+            index.names[index.size] = e[1];
+            index.ids[index.size] = Integer.parseInt(e[2]);
+            index.size++;
+        }
+        return index;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(TransferCertificate tc) {
+        String name = tc.getStudentName();
+        forEachKey(name, tc.getRegisterNo(), tc.getUmisNo(), key -> insert(key, name, tc.getId()));
+    }
+
+    // Brings the index up to date with changes from the change log: drops
+    // every key of the changed records in one pass, then re-adds the survivors
+    void apply(List<CertificateChange> changes) {
+        Set<Integer> changed = new HashSet<>();
+        for (CertificateChange c : changes) {
+            changed.add(c.getId());
+        }
+        remove(changed);
+        for (CertificateChange c : changes) {
+            if (!c.isDelete()) {
+                add(c.getRecord());
+            }
+        }
+    }
+
+    private void remove(Set<Integer> remove) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!remove.contains(ids[i])) {
+                keys[kept] = keys[i];
+                names[kept] = names[i];
+                ids[kept] = ids[i];
+                kept++;
+            }
+        }
+        Arrays.fill(keys, kept, size, null);
+        Arrays.fill(names, kept, size, null);
+        size = kept;
+    }
+
+    // Up to limit distinct student names with a key starting with prefix, in key order
+    List<String> suggest(String prefix, int limit) {
+        String p = prefix.trim().toLowerCase(Locale.ROOT);
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = lowerBound(p, ""); i < size && result.size() < limit && keys[i].startsWith(p); i++) {
+            result.add(names[i]);
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static void forEachKey(String name, String registerNo, String umisNo, Consumer<String> sink) {
+        if (name == null || name.trim().isEmpty()) {
+            return;
+        }
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        sink.accept(lower);
+        for (int i = 1; i < lower.length(); i++) {
+            if (!Character.isLetterOrDigit(lower.charAt(i - 1)) && Character.isLetterOrDigit(lower.charAt(i))) {
+                sink.accept(lower.substring(i));
+            }
+        }
+        if (registerNo != null && !registerNo.trim().isEmpty()) {
+            sink.accept(registerNo.trim().toLowerCase(Locale.ROOT));
+        }
+        if (umisNo != null && !umisNo.trim().isEmpty()) {
+            sink.accept(umisNo.trim().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private void insert(String key, String name, int id) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int at = lowerBound(key, name);
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(names, at, names, at + 1, size - at);
+        System.arraycopy(ids, at, ids, at + 1, size - at);
+        keys[at] = key;
+        names[at] = name;
+        ids[at] = id;
+        size++;
+    }
+
+    // First position whose (key, name) is not less than the given pair
+    private int lowerBound(String key, String name) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(keys[mid], names[mid], key, name) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int compare(String keyA, String nameA, String keyB, String nameB) {
+        int c = keyA.compareTo(keyB);
+        return c != 0 ? c : nameA.compareTo(nameB);
+    }
+}
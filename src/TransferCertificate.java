@@ -0,0 +1,99 @@
+
+import java.util.Arrays;
+
+// One row of transfer_certificates. Immutable - use with(...) to derive a changed copy.
+public final class TransferCertificate {
+
+    // Column order used everywhere a certificate is written or read as a whole
+    // (INSERT column list, Excel import/export column order)
+    public static final String[] COLUMNS = {
+        "student_name", "register_no", "serial_no", "father_name", "dob", "dob_words",
+        "nationality", "religion", "caste", "gender", "admission_date", "course",
+        "games", "ncc", "fee_concession", "result", "leaving_date", "class_leaving",
+        "qualified", "reason", "issue_date", "conduct", "remarks", "umis_no"
+    };
+
+    public static final int STUDENT_NAME = 0, REGISTER_NO = 1, SERIAL_NO = 2, FATHER_NAME = 3,
+            DOB = 4, DOB_WORDS = 5, NATIONALITY = 6, RELIGION = 7, CASTE = 8, GENDER = 9,
+            ADMISSION_DATE = 10, COURSE = 11, GAMES = 12, NCC = 13, FEE_CONCESSION = 14,
+            RESULT = 15, LEAVING_DATE = 16, CLASS_LEAVING = 17, QUALIFIED = 18, REASON = 19,
+            ISSUE_DATE = 20, CONDUCT = 21, REMARKS = 22, UMIS_NO = 23;
+
+    public static final int FIELD_COUNT = COLUMNS.length;
+
+    private final int id;
+    private final String[] values;
+
+    // id <= 0 means the record has not been saved yet
+    public TransferCertificate(int id, String[] values) {
+        if (values.length != FIELD_COUNT) {
+            throw new IllegalArgumentException("Expected " + FIELD_COUNT + " values but got " + values.length);
+        }
+        this.id = id;
+        this.values = new String[FIELD_COUNT];
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            this.values[i] = values[i] != null ? values[i] : "";
+        }
+    }
+
+    public int getId() { return id; }
+
+    // Value by column index (see COLUMNS); never null
+    public String get(int column) { return values[column]; }
+
+    public String[] toArray() { return values.clone(); }
+
+    public TransferCertificate withId(int newId) {
+        return new TransferCertificate(newId, values);
+    }
+
+    public TransferCertificate with(int column, String value) {
+        String[] copy = values.clone();
+        copy[column] = value;
+        return new TransferCertificate(id, copy);
+    }
+
+    public String getStudentName() { return values[STUDENT_NAME]; }
+    public String getRegisterNo() { return values[REGISTER_NO]; }
+    public String getSerialNo() { return values[SERIAL_NO]; }
+    public String getFatherName() { return values[FATHER_NAME]; }
+    public String getDob() { return values[DOB]; }
+    public String getDobWords() { return values[DOB_WORDS]; }
+    public String getNationality() { return values[NATIONALITY]; }
+    public String getReligion() { return values[RELIGION]; }
+    public String getCaste() { return values[CASTE]; }
+    public String getGender() { return values[GENDER]; }
+    public String getAdmissionDate() { return values[ADMISSION_DATE]; }
+    public String getCourse() { return values[COURSE]; }
+    public String getGames() { return values[GAMES]; }
+    public String getNcc() { return values[NCC]; }
+    public String getFeeConcession() { return values[FEE_CONCESSION]; }
+    public String getResult() { return values[RESULT]; }
+    public String getLeavingDate() { return values[LEAVING_DATE]; }
+    public String getClassLeaving() { return values[CLASS_LEAVING]; }
+    public String getQualified() { return values[QUALIFIED]; }
+    public String getReason() { return values[REASON]; }
+    public String getIssueDate() { return values[ISSUE_DATE]; }
+    public String getConduct() { return values[CONDUCT]; }
+    public String getRemarks() { return values[REMARKS]; }
+    public String getUmisNo() { return values[UMIS_NO]; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransferCertificate)) return false;
+        TransferCertificate other = (TransferCertificate) o;
+        return id == other.id && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "TransferCertificate[id=" + id + ", student=" + getStudentName()
+                + ", registerNo=" + getRegisterNo() + "]";
+    }
+}
@@ -1,15 +1,20 @@
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
 import java.sql.*;
 import java.text.*;
-import java.util.Date;
-import java.util.Iterator;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import com.itextpdf.text.Chunk;
 import com.itextpdf.text.DocumentException;
 
@@ -34,23 +39,21 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook; // for .xlsx
-import org.apache.poi.hssf.usermodel.HSSFWorkbook; // for .xls
+import org.apache.poi.xssf.streaming.SXSSFWorkbook; // streaming .xlsx export
 
 
 
 
 public class TransferCertificateForm extends JFrame {
-    // ✅ Correct SQLite JDBC URL
-    private static final String DB_URL = "jdbc:sqlite:college.db";
-    // SQLite doesn’t need username/password
-    private static final String DB_USERNAME = "";
-    private static final String DB_PASSWORD = "";
-    
+    // Rows SXSSF keeps in memory during export; older rows are flushed to disk
+    private static final int EXPORT_ROW_WINDOW = 200;
+
+    // Shared SQLite connections (writer + WAL readers), configured once per process
+    private final DatabaseManager db = DatabaseManager.getInstance();
+    private final TransferCertificateRepository repository = TransferCertificateRepository.getInstance();
+
     public JTextField studentNameField, registerNoField, serialNoField, fatherNameField,
             dobField, dobWordsField, nationalityField, religionField, casteField, 
             genderField, admissionDateField, courseField, gamesField, nccField, 
@@ -61,60 +64,63 @@ public class TransferCertificateForm extends JFrame {
     private JButton generateBtn, importExcelBtn, saveToDbBtn, loadFromDbBtn, clearFieldsBtn, 
             backToMenuBtn, exportExcelBtn, searchBtn, deleteBtn, batchPrintBtn;
     private JComboBox<String> studentSelector;
+    // Type-ahead for the selector: names, register and UMIS numbers held in memory
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int SUGGEST_DEBOUNCE_MS = 120;
+    private StudentIndex studentIndex = StudentIndex.empty();
+    // Changes applied while an index is being built, for the new index too;
+    // null when no build is running
+    private List<CertificateChange> changesDuringBuild;
+    private int selectorBuild;
+    private SearchScheduler suggestScheduler;
+    private boolean updatingSelector;
+    private String lastChosenStudent;
+    private ChangeFeed changeFeed;
+    // The draft in the form: id of its row (0 until first saved), field texts
+    // as last loaded or saved, and the fields typed into since then
+    private int draftId;
+    private String[] savedTexts = new String[TransferCertificate.FIELD_COUNT];
+    private final BitSet editedFields = new BitSet();
+    private boolean fillingFields;
+    // Last save handed to the repository (see saveDraft) and the draft it was for
+    private CompletableFuture<Integer> lastSave = CompletableFuture.completedFuture(0);
+    private int lastSaveVersion = -1;
+    // Bumped when another record (or a blank form) replaces the draft
+    private int draftVersion;
     private JTextField searchField;
     private JProgressBar progressBar;
     private JLabel statusLabel;
     private Timer autoSaveTimer;
     private boolean isDarkMode = false;
     private JToggleButton darkModeToggle;
+    // Form that records opened from the View window are edited in; reused so
+    // opening another record only loads that record (see editRecord)
+    private static TransferCertificateForm editor;
 
     public TransferCertificateForm() {
         initializeDatabase();
+        // Keeps the selector's index current with writes from any window;
+        // started before setupGUI builds the index
+        changeFeed = new ChangeFeed(repository, ChangeFeed.DEFAULT_POLL_MS,
+                this::applyChanges, this::refreshStudentSelector);
+        changeFeed.start();
         setupGUI();
+        trackEdits();
         setupAutoSave();
         applyTheme();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeFeed.stop();
+                autoSaveTimer.stop();
+            }
+        });
     }
 
     private void initializeDatabase() {
         try {
-            // ✅ SQLite JDBC driver
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL);
-
-            String createTableSQL = "CREATE TABLE IF NOT EXISTS transfer_certificates (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "student_name TEXT," +
-                "register_no TEXT," +
-                "serial_no TEXT," +
-                "father_name TEXT," +
-                "dob TEXT," +
-                "dob_words TEXT," +
-                "nationality TEXT," +
-                "religion TEXT," +
-                "caste TEXT," +
-                "gender TEXT," +
-                "admission_date TEXT," +
-                "course TEXT," +
-                "games TEXT," +
-                "ncc TEXT," +
-                "fee_concession TEXT," +
-                "result TEXT," +
-                "leaving_date TEXT," +
-                "class_leaving TEXT," +
-                "qualified TEXT," +
-                "reason TEXT," +
-                "issue_date TEXT," +
-                "conduct TEXT," +
-                "remarks TEXT," +
-                "umis_no TEXT," +
-                "created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")";
-            
-            Statement stmt = conn.createStatement();
-            stmt.execute(createTableSQL);
-            stmt.close();
-            conn.close();
-            System.out.println("SQLite Database initialized successfully");
+            // Runs any pending schema migrations; a no-op once the schema is current
+            db.ensureSchema();
         } catch (Exception e) {
             System.err.println("Database initialization failed: " + e.getMessage());
             e.printStackTrace();
@@ -221,8 +227,21 @@ public class TransferCertificateForm extends JFrame {
         selectorPanel.setOpaque(false);
         selectorPanel.add(new JLabel("Select Student:"));
         studentSelector = new JComboBox<>();
+        studentSelector.setEditable(true);
         studentSelector.setPreferredSize(new Dimension(250, 30));
-        studentSelector.addActionListener(e -> loadSelectedStudent());
+        studentSelector.setToolTipText("Type a name, register no or UMIS no");
+        studentSelector.addActionListener(e -> {
+            if (!updatingSelector) {
+                lastChosenStudent = selectedStudentName();
+                loadSelectedStudent();
+            }
+        });
+        suggestScheduler = new SearchScheduler(SUGGEST_DEBOUNCE_MS, this::showSuggestions);
+        selectorEditor().getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { scheduleSuggestions(); }
+            @Override public void removeUpdate(DocumentEvent e) { scheduleSuggestions(); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        });
         selectorPanel.add(studentSelector);
 
         topPanel.add(titlePanel, BorderLayout.NORTH);
@@ -375,15 +394,65 @@ public class TransferCertificateForm extends JFrame {
     private void setupAutoSave() {
         autoSaveTimer = new Timer(300000, e -> { // Auto-save every 5 minutes
             if (hasUnsavedChanges()) {
-                saveToDatabase();
-                showNotification("Auto-saved successfully!");
+                saveDraft(true);
             }
         });
         autoSaveTimer.start();
     }
 
+    // Marks a field edited when the user types into it (not when a record is filled in)
+    private void trackEdits() {
+        Arrays.fill(savedTexts, "");
+        JTextField[] fields = recordFields();
+        for (int i = 0; i < fields.length; i++) {
+            int field = i;
+            fields[i].getDocument().addDocumentListener(new DocumentListener() {
+                @Override public void insertUpdate(DocumentEvent e) { edited(field); }
+                @Override public void removeUpdate(DocumentEvent e) { edited(field); }
+                @Override public void changedUpdate(DocumentEvent e) { }
+            });
+        }
+    }
+
+    private void edited(int field) {
+        if (!fillingFields) {
+            editedFields.set(field);
+        }
+    }
+
+    // Edited fields whose text differs from the saved draft
+    private BitSet changedFields() {
+        JTextField[] fields = recordFields();
+        BitSet changed = new BitSet();
+        for (int f = editedFields.nextSetBit(0); f >= 0; f = editedFields.nextSetBit(f + 1)) {
+            if (!fields[f].getText().equals(savedTexts[f])) {
+                changed.set(f);
+            }
+        }
+        return changed;
+    }
+
+    // The form now shows a different draft
+    private void startDraft(int id) {
+        draftVersion++;
+        markSaved(id, toRecord());
+    }
+
+    // saved holds the field texts as written; anything typed since stays edited
+    private void markSaved(int id, TransferCertificate saved) {
+        savedTexts = saved.toArray();
+        draftId = id;
+        editedFields.clear();
+        JTextField[] fields = recordFields();
+        for (int i = 0; i < fields.length; i++) {
+            if (!fields[i].getText().equals(savedTexts[i])) {
+                editedFields.set(i);
+            }
+        }
+    }
+
     private boolean hasUnsavedChanges() {
-        return !studentNameField.getText().trim().isEmpty();
+        return !studentNameField.getText().trim().isEmpty() && !changedFields().isEmpty();
     }
 
     private void showNotification(String message) {
@@ -457,25 +526,11 @@ public class TransferCertificateForm extends JFrame {
             progressBar.setVisible(true);
             progressBar.setIndeterminate(true);
             
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            String sql = "SELECT DISTINCT student_name FROM transfer_certificates WHERE " +
-                "student_name LIKE ? OR register_no LIKE ? OR father_name LIKE ? " +
-                "ORDER BY student_name";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            String searchPattern = "%" + searchTerm + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            pstmt.setString(3, searchPattern);
-            
-            ResultSet rs = pstmt.executeQuery();
-            studentSelector.removeAllItems();
-            studentSelector.addItem("Select Student");
-            
-            int count = 0;
-            while (rs.next()) {
-                studentSelector.addItem(rs.getString("student_name"));
-                count++;
+            List<String> names = repository.searchStudentNames(searchTerm);
+            setSelectorItems(names, "");
+            int count = names.size();
+            if (count > 0) {
+                studentSelector.showPopup();
             }
             
             if (count == 0) {
@@ -483,10 +538,6 @@ public class TransferCertificateForm extends JFrame {
             } else {
                 showNotification("Found " + count + " student(s)");
             }
-            
-            rs.close();
-            pstmt.close();
-            conn.close();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Search error: " + e.getMessage());
         } finally {
@@ -495,8 +546,8 @@ public class TransferCertificateForm extends JFrame {
     }
 
     private void deleteRecord() {
-        String selectedStudent = (String) studentSelector.getSelectedItem();
-        if (selectedStudent == null || selectedStudent.equals("Select Student")) {
+        String selectedStudent = selectedStudentName();
+        if (selectedStudent == null) {
             JOptionPane.showMessageDialog(this, "Please select a student to delete");
             return;
         }
@@ -506,25 +557,15 @@ public class TransferCertificateForm extends JFrame {
             "Confirm Delete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                Class.forName("org.sqlite.JDBC");
-                Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-                String sql = "DELETE FROM transfer_certificates WHERE student_name = ?";
-                PreparedStatement pstmt = conn.prepareStatement(sql);
-                pstmt.setString(1, selectedStudent);
-                
-                int deleted = pstmt.executeUpdate();
-                if (deleted > 0) {
+            repository.deleteByStudentName(selectedStudent).whenComplete((deleted, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    JOptionPane.showMessageDialog(this, "Delete error: " + error.getMessage());
+                } else if (deleted > 0) {
                     JOptionPane.showMessageDialog(this, "Record deleted successfully!");
+                    changeFeed.poll();
                     clearAllFields();
-                    refreshStudentSelector();
                 }
-                
-                pstmt.close();
-                conn.close();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, "Delete error: " + e.getMessage());
-            }
+            }));
         }
     }
 
@@ -535,21 +576,48 @@ public class TransferCertificateForm extends JFrame {
     fileChooser.setFileFilter(filter);
 
     if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-        File file = fileChooser.getSelectedFile();
-        if (!file.getName().toLowerCase().endsWith(".xlsx")) {
-            file = new File(file.getAbsolutePath() + ".xlsx");
-        }
+        File chosen = fileChooser.getSelectedFile();
+        File file = chosen.getName().toLowerCase().endsWith(".xlsx")
+            ? chosen : new File(chosen.getAbsolutePath() + ".xlsx");
 
         progressBar.setVisible(true);
         progressBar.setIndeterminate(true);
         statusLabel.setText("Exporting to Excel...");
 
-        try (
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT * FROM transfer_certificates ORDER BY student_name");
-            Workbook workbook = new XSSFWorkbook();
-        ) {
+        SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return writeExcelExport(file);
+            }
+
+            @Override
+            protected void done() {
+                progressBar.setIndeterminate(false);
+                progressBar.setVisible(false);
+                statusLabel.setText("Ready");
+                try {
+                    JOptionPane.showMessageDialog(TransferCertificateForm.this,
+                        "Exported " + get() + " records to Excel successfully!");
+                    showNotification("Export completed");
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(TransferCertificateForm.this, "Export error: " + cause.getMessage());
+                    cause.printStackTrace();
+                }
+            }
+        };
+        worker.execute();
+    }
+}
+
+    // Streams every record into an SXSSF workbook: only EXPORT_ROW_WINDOW rows
+    // are kept in memory, the rest are flushed to a temp file as we go.
+    // Column widths come from the longest value seen per column, since
+    // autoSizeColumn would need every row in memory and measures with AWT fonts.
+    private int writeExcelExport(File file) throws IOException, SQLException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+        try {
+            workbook.setCompressTempFiles(true);
             Sheet sheet = workbook.createSheet("Transfer Certificates");
 
             // Header row
@@ -565,64 +633,41 @@ public class TransferCertificateForm extends JFrame {
             headerFont.setBold(true);
             headerStyle.setFont(headerFont);
 
+            int[] maxChars = new int[headers.length];
             for (int i = 0; i < headers.length; i++) {
                 Cell cell = headerRow.createCell(i);
                 cell.setCellValue(headers[i]);
                 cell.setCellStyle(headerStyle);
+                maxChars[i] = headers[i].length() + 1; // bold header runs a little wider
             }
 
             // Fill data
-            int rowNum = 1;
-            while (rs.next()) {
-                Row row = sheet.createRow(rowNum++);
-                row.createCell(0).setCellValue(rs.getString("student_name"));
-                row.createCell(1).setCellValue(rs.getString("register_no"));
-                row.createCell(2).setCellValue(rs.getString("serial_no"));
-                row.createCell(3).setCellValue(rs.getString("father_name"));
-                row.createCell(4).setCellValue(rs.getString("dob"));
-                row.createCell(5).setCellValue(rs.getString("dob_words"));
-                row.createCell(6).setCellValue(rs.getString("nationality"));
-                row.createCell(7).setCellValue(rs.getString("religion"));
-                row.createCell(8).setCellValue(rs.getString("caste"));
-                row.createCell(9).setCellValue(rs.getString("gender"));
-                row.createCell(10).setCellValue(rs.getString("admission_date"));
-                row.createCell(11).setCellValue(rs.getString("course"));
-                row.createCell(12).setCellValue(rs.getString("games"));
-                row.createCell(13).setCellValue(rs.getString("ncc"));
-                row.createCell(14).setCellValue(rs.getString("fee_concession"));
-                row.createCell(15).setCellValue(rs.getString("result"));
-                row.createCell(16).setCellValue(rs.getString("leaving_date"));
-                row.createCell(17).setCellValue(rs.getString("class_leaving"));
-                row.createCell(18).setCellValue(rs.getString("qualified"));
-                row.createCell(19).setCellValue(rs.getString("reason"));
-                row.createCell(20).setCellValue(rs.getString("issue_date"));
-                row.createCell(21).setCellValue(rs.getString("conduct"));
-                row.createCell(22).setCellValue(rs.getString("remarks"));
-                row.createCell(23).setCellValue(rs.getString("umis_no"));
-            }
+            int[] rowNum = {1};
+            int exported = repository.scan("student_name", false, tc -> {
+                Row row = sheet.createRow(rowNum[0]++);
+                for (int i = 0; i < TransferCertificate.FIELD_COUNT; i++) {
+                    String value = tc.get(i);
+                    row.createCell(i).setCellValue(value);
+                    if (value.length() > maxChars[i]) {
+                        maxChars[i] = value.length();
+                    }
+                }
+            });
 
-            // Auto-size
+            // Width is in 1/256 of a character; Excel caps columns at 255 characters
             for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
+                sheet.setColumnWidth(i, Math.min(255, maxChars[i] + 2) * 256);
             }
 
             try (FileOutputStream fos = new FileOutputStream(file)) {
                 workbook.write(fos);
             }
-
-            JOptionPane.showMessageDialog(this, 
-                "Exported " + (rowNum - 1) + " records to Excel successfully!");
-            showNotification("Export completed");
-
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Export error: " + e.getMessage());
-            e.printStackTrace();
+            return exported;
         } finally {
-            progressBar.setVisible(false);
-            statusLabel.setText("Ready");
+            workbook.dispose(); // delete the temp files backing flushed rows
+            workbook.close();
         }
     }
-}
 
 
     private void batchPrint() {
@@ -639,19 +684,9 @@ public class TransferCertificateForm extends JFrame {
         studentList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         
         try {
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            String sql = "SELECT DISTINCT student_name FROM transfer_certificates ORDER BY student_name";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            
-            while (rs.next()) {
-                listModel.addElement(rs.getString("student_name"));
+            for (String name : repository.findStudentNames()) {
+                listModel.addElement(name);
             }
-            
-            rs.close();
-            stmt.close();
-            conn.close();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Error loading students: " + e.getMessage());
             return;
@@ -683,17 +718,27 @@ public class TransferCertificateForm extends JFrame {
                 progressBar.setMaximum(selectedStudents.size());
                 progressBar.setValue(0);
                 
-                SwingWorker<Void, Integer> worker = new SwingWorker<Void, Integer>() {
+                // Every record in a few queries, then rendered straight from the
+                // records; the form's fields are left alone
+                SwingWorker<List<String>, Integer> worker = new SwingWorker<List<String>, Integer>() {
+                    private int generated;
+
                     @Override
-                    protected Void doInBackground() throws Exception {
+                    protected List<String> doInBackground() throws Exception {
+                        List<TransferCertificate> records = repository.findLatestByNames(selectedStudents);
+                        List<String> failures = new ArrayList<>();
                         int count = 0;
-                        for (String studentName : selectedStudents) {
-                            loadStudentData(studentName);
-                            generatePDFSilently(studentName);
+                        for (TransferCertificate tc : records) {
+                            try {
+                                generatePDFSilently(tc, tc.getStudentName());
+                                generated++;
+                            } catch (IOException | DocumentException e) {
+                                failures.add(tc.getStudentName() + ": " + e.getMessage());
+                            }
                             count++;
                             publish(count);
                         }
-                        return null;
+                        return failures;
                     }
                     
                     @Override
@@ -707,8 +752,19 @@ public class TransferCertificateForm extends JFrame {
                     protected void done() {
                         progressBar.setVisible(false);
                         statusLabel.setText("Ready");
-                        JOptionPane.showMessageDialog(TransferCertificateForm.this, 
-                            "Batch print completed! Generated " + selectedStudents.size() + " PDFs.");
+                        try {
+                            List<String> failures = get();
+                            String message = "Batch print completed! Generated " + generated + " PDFs.";
+                            if (!failures.isEmpty()) {
+                                message += "\nFailed:\n" + String.join("\n", failures);
+                            }
+                            JOptionPane.showMessageDialog(TransferCertificateForm.this, message);
+                        } catch (InterruptedException | ExecutionException e) {
+                            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                            cause.printStackTrace();
+                            JOptionPane.showMessageDialog(TransferCertificateForm.this,
+                                "Batch print failed: " + cause.getMessage());
+                        }
                     }
                 };
                 worker.execute();
@@ -725,51 +781,9 @@ public class TransferCertificateForm extends JFrame {
         dialog.setVisible(true);
     }
 
-    private void loadStudentData(String studentName) {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            String sql = "SELECT * FROM transfer_certificates WHERE student_name = ? ORDER BY id DESC LIMIT 1";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, studentName);
-            
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                studentNameField.setText(rs.getString("student_name") != null ? rs.getString("student_name") : "");
-                registerNoField.setText(rs.getString("register_no") != null ? rs.getString("register_no") : "");
-                serialNoField.setText(rs.getString("serial_no") != null ? rs.getString("serial_no") : "");
-                fatherNameField.setText(rs.getString("father_name") != null ? rs.getString("father_name") : "");
-                dobField.setText(rs.getString("dob") != null ? rs.getString("dob") : "");
-                dobWordsField.setText(rs.getString("dob_words") != null ? rs.getString("dob_words") : "");
-                nationalityField.setText(rs.getString("nationality") != null ? rs.getString("nationality") : "");
-                religionField.setText(rs.getString("religion") != null ? rs.getString("religion") : "");
-                casteField.setText(rs.getString("caste") != null ? rs.getString("caste") : "");
-                genderField.setText(rs.getString("gender") != null ? rs.getString("gender") : "");
-                admissionDateField.setText(rs.getString("admission_date") != null ? rs.getString("admission_date") : "");
-                courseField.setText(rs.getString("course") != null ? rs.getString("course") : "");
-                gamesField.setText(rs.getString("games") != null ? rs.getString("games") : "");
-                nccField.setText(rs.getString("ncc") != null ? rs.getString("ncc") : "");
-                feeConcessionField.setText(rs.getString("fee_concession") != null ? rs.getString("fee_concession") : "");
-                resultField.setText(rs.getString("result") != null ? rs.getString("result") : "");
-                leavingDateField.setText(rs.getString("leaving_date") != null ? rs.getString("leaving_date") : "");
-                classLeavingField.setText(rs.getString("class_leaving") != null ? rs.getString("class_leaving") : "");
-                qualifiedField.setText(rs.getString("qualified") != null ? rs.getString("qualified") : "");
-                reasonField.setText(rs.getString("reason") != null ? rs.getString("reason") : "");
-                issueDateField.setText(rs.getString("issue_date") != null ? rs.getString("issue_date") : "");
-                conductField.setText(rs.getString("conduct") != null ? rs.getString("conduct") : "");
-                remarksField.setText(rs.getString("remarks") != null ? rs.getString("remarks") : "");
-                umisField.setText(rs.getString("umis_no") != null ? rs.getString("umis_no") : "");
-            }
-            rs.close();
-            pstmt.close();
-            conn.close();
-        } catch (Exception e) {
-            System.err.println("Error loading student data: " + e.getMessage());
-        }
-    }
-
-   private void generatePDFSilently(String fileName) {
-    try {
+   // Renders one record straight to fileName, without going through the
+   // form's fields; safe to call off the EDT
+   private void generatePDFSilently(TransferCertificate tc, String fileName) throws IOException, DocumentException {
         Document document = new Document(PageSize.A4, 40, 40, 40, 40);
         PdfWriter.getInstance(document, new FileOutputStream(fileName));
         document.open();
@@ -814,42 +828,43 @@ public class TransferCertificateForm extends JFrame {
         // --- Reg No & Serial No ---
         Paragraph regSerial = new Paragraph();
         regSerial.add(new Chunk("Reg.No.     : ", fieldFont));
-        regSerial.add(new Chunk(registerNoField.getText(), contentFont));
+        regSerial.add(new Chunk(pdfText(tc, TransferCertificate.REGISTER_NO), contentFont));
         regSerial.add(new Chunk("                                                                                                     ", contentFont));
         regSerial.add(new Chunk("                                                 Serial No :", fieldFont));
-        regSerial.add(new Chunk("  " + serialNoField.getText(), contentFont));
+        regSerial.add(new Chunk("  " + pdfText(tc, TransferCertificate.SERIAL_NO), contentFont));
         regSerial.setSpacingAfter(50);
         document.add(regSerial);
 
         // --- Content Fields ---
-        addTableField(document, "1. Name of the Student:", studentNameField.getText(), fieldFont, contentFont);
-        addTableField(document, "2. Name of the Father / Guardian / Mother:", fatherNameField.getText(), fieldFont, contentFont);
+        addTableField(document, "1. Name of the Student:", pdfText(tc, TransferCertificate.STUDENT_NAME), fieldFont, contentFont);
+        addTableField(document, "2. Name of the Father / Guardian / Mother:", pdfText(tc, TransferCertificate.FATHER_NAME), fieldFont, contentFont);
 
-        String dobText = dobField.getText();
-        if (!dobWordsField.getText().isEmpty()) {
-            dobText += "\n    " + dobWordsField.getText();
+        String dobText = pdfText(tc, TransferCertificate.DOB);
+        String dobWords = pdfText(tc, TransferCertificate.DOB_WORDS);
+        if (!dobWords.isEmpty()) {
+            dobText += "\n    " + dobWords;
         }
         addTableField(document, "3. Date of Birth as entered in the School Record (in words):", dobText, fieldFont, contentFont);
 
-        String nationalityInfo = nationalityField.getText() + " - " + religionField.getText() + " - " + casteField.getText();
+        String nationalityInfo = pdfText(tc, TransferCertificate.NATIONALITY) + " - " + pdfText(tc, TransferCertificate.RELIGION) + " - " + pdfText(tc, TransferCertificate.CASTE);
         addTableField(document, "4. Nationality, Religion & Caste:", nationalityInfo, fieldFont, contentFont);
 
-        addTableField(document, "5. Gender:", genderField.getText(), fieldFont, contentFont);
+        addTableField(document, "5. Gender:", pdfText(tc, TransferCertificate.GENDER), fieldFont, contentFont);
 
-        String admissionInfo = admissionDateField.getText() + " & " + courseField.getText();
+        String admissionInfo = pdfText(tc, TransferCertificate.ADMISSION_DATE) + " & " + pdfText(tc, TransferCertificate.COURSE);
         addTableField(document, "6. Date of Admission and Course in which admitted:", admissionInfo, fieldFont, contentFont);
 
-        addTableField(document, "7. Games played or extra-curricular activities:", gamesField.getText(), fieldFont, contentFont);
-        addTableField(document, "8. Whether NCC Cadet / Scout & Guide:", nccField.getText(), fieldFont, contentFont);
-        addTableField(document, "9. Any fee concession availed:", feeConcessionField.getText(), fieldFont, contentFont);
-        addTableField(document, "10. Annual examination last taken result with class:", resultField.getText(), fieldFont, contentFont);
-        addTableField(document, "11. Date on which the student left the college:", leavingDateField.getText(), fieldFont, contentFont);
-        addTableField(document, "12. Class in which the student was studying:", classLeavingField.getText(), fieldFont, contentFont);
-        addTableField(document, "13. Whether qualified for promotion:", qualifiedField.getText(), fieldFont, contentFont);
-        addTableField(document, "14. Reason for leaving the Institution:", reasonField.getText(), fieldFont, contentFont);
-        addTableField(document, "15. Date of issue of Transfer Certificate", issueDateField.getText(), fieldFont, contentFont);
-        addTableField(document, "16. Student conduct and character:", conductField.getText(), fieldFont, contentFont);
-        addTableField(document, "17. Any other Remarks:", remarksField.getText(), fieldFont, contentFont);
+        addTableField(document, "7. Games played or extra-curricular activities:", pdfText(tc, TransferCertificate.GAMES), fieldFont, contentFont);
+        addTableField(document, "8. Whether NCC Cadet / Scout & Guide:", pdfText(tc, TransferCertificate.NCC), fieldFont, contentFont);
+        addTableField(document, "9. Any fee concession availed:", pdfText(tc, TransferCertificate.FEE_CONCESSION), fieldFont, contentFont);
+        addTableField(document, "10. Annual examination last taken result with class:", pdfText(tc, TransferCertificate.RESULT), fieldFont, contentFont);
+        addTableField(document, "11. Date on which the student left the college:", pdfText(tc, TransferCertificate.LEAVING_DATE), fieldFont, contentFont);
+        addTableField(document, "12. Class in which the student was studying:", pdfText(tc, TransferCertificate.CLASS_LEAVING), fieldFont, contentFont);
+        addTableField(document, "13. Whether qualified for promotion:", pdfText(tc, TransferCertificate.QUALIFIED), fieldFont, contentFont);
+        addTableField(document, "14. Reason for leaving the Institution:", pdfText(tc, TransferCertificate.REASON), fieldFont, contentFont);
+        addTableField(document, "15. Date of issue of Transfer Certificate", pdfText(tc, TransferCertificate.ISSUE_DATE), fieldFont, contentFont);
+        addTableField(document, "16. Student conduct and character:", pdfText(tc, TransferCertificate.CONDUCT), fieldFont, contentFont);
+        addTableField(document, "17. Any other Remarks:", pdfText(tc, TransferCertificate.REMARKS), fieldFont, contentFont);
 
         document.add(new Paragraph(" ", contentFont)); // spacing
 
@@ -857,7 +872,7 @@ public class TransferCertificateForm extends JFrame {
         Paragraph umisSection = new Paragraph();
         umisSection.add(new Chunk("                                                                                              ", contentFont));
         umisSection.add(new Chunk(":UMIS NO: ", fieldFont));
-        umisSection.add(new Chunk(umisField.getText(), contentFont));
+        umisSection.add(new Chunk(pdfText(tc, TransferCertificate.UMIS_NO), contentFont));
         umisSection.setSpacingAfter(30);
         document.add(umisSection);
 
@@ -868,13 +883,12 @@ public class TransferCertificateForm extends JFrame {
         document.add(principalSignature);
 
         document.close();
+}
 
-        updateStatus("PDF silently generated: " + fileName);
-
-    } catch (Exception e) {
-        e.printStackTrace();
-        updateStatus("Error generating PDF silently: " + e.getMessage());
-    }
+// A record's value as the form would show it (dates as dd-MM-yyyy)
+private static String pdfText(TransferCertificate tc, int field) {
+    String value = tc.get(field);
+    return CertificateDates.isDateField(field) ? CertificateDates.toEntry(value) : value;
 }
 
 // Add this method to fix the error
@@ -926,197 +940,141 @@ private void updateStatus(String message) {
 
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            try {
-                importExcelData(selectedFile);
-                JOptionPane.showMessageDialog(this, "Excel data imported successfully!");
-                refreshStudentSelector();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, "Error importing Excel: " + e.getMessage(), 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
-        }
-    }
+            importExcelBtn.setEnabled(false);
+            progressBar.setVisible(true);
+            progressBar.setIndeterminate(true);
+            statusLabel.setText("Importing from Excel...");
 
-    private void importExcelData(File file) throws IOException {
-        FileInputStream fis = new FileInputStream(file);
-        Workbook workbook;
-        
-        if (file.getName().toLowerCase().endsWith(".xlsx")) {
-            workbook = new XSSFWorkbook(fis);
-        } else {
-            workbook = new HSSFWorkbook(fis);
-        }
+            // Parse, normalise and write run as separate stages; see ImportPipeline
+            SwingWorker<ImportPipeline.Result, Void> worker = new SwingWorker<ImportPipeline.Result, Void>() {
+                @Override
+                protected ImportPipeline.Result doInBackground() throws Exception {
+                    return new ImportPipeline(repository, ImportPipeline.DEFAULT_WORKERS).run(selectedFile);
+                }
 
-        Sheet sheet = workbook.getSheetAt(0);
-        Iterator<Row> rowIterator = sheet.iterator();
-        
-        // Skip header row if exists
-        if (rowIterator.hasNext()) {
-            Row headerRow = rowIterator.next();
-            // Check if first cell looks like a header
-            Cell firstCell = headerRow.getCell(0);
-            if (firstCell != null && firstCell.getCellType() == CellType.STRING) {
-                String firstCellValue = firstCell.getStringCellValue().toLowerCase();
-                if (!firstCellValue.contains("student") && !firstCellValue.matches(".*[0-9].*")) {
-                    // This doesn't look like a header, process this row
-                    importRowToDatabase(headerRow);
+                @Override
+                protected void done() {
+                    importExcelBtn.setEnabled(true);
+                    progressBar.setIndeterminate(false);
+                    progressBar.setVisible(false);
+                    statusLabel.setText("Ready");
+                    try {
+                        showImportResult(get());
+                    } catch (Exception e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        JOptionPane.showMessageDialog(TransferCertificateForm.this,
+                            "Error importing Excel: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        cause.printStackTrace();
+                    }
+                    changeFeed.poll(); // reloads the index instead when the import was large
                 }
-            } else if (firstCell != null) {
-                // Not a string, probably data
-                importRowToDatabase(headerRow);
-            }
+            };
+            worker.execute();
         }
+    }
 
-        // Import remaining rows to database
-        int importedCount = 0;
-        while (rowIterator.hasNext()) {
-            Row row = rowIterator.next();
-            if (importRowToDatabase(row)) {
-                importedCount++;
-            }
+    // One dialog: success, or the summary with the rows that failed
+    private void showImportResult(ImportPipeline.Result result) {
+        if (result.getFailed() == 0) {
+            JOptionPane.showMessageDialog(this, "Excel data imported successfully!\n\n" + result.summary());
+            return;
+        }
+        StringBuilder message = new StringBuilder(result.summary()).append("\n\nFailed rows:");
+        for (String failure : result.getFailures()) {
+            message.append("\n").append(failure);
         }
+        JOptionPane.showMessageDialog(this, message.toString());
+    }
 
-        workbook.close();
-        fis.close();
-        
-        JOptionPane.showMessageDialog(this, "Imported " + importedCount + " records successfully!");
+    private void saveToDatabase() {
+        saveDraft(false);
     }
 
-    private boolean importRowToDatabase(Row row) {
-        try {
-            // Check if row has any data
-            boolean hasData = false;
-            for (int i = 0; i < 24; i++) {
-                Cell cell = row.getCell(i);
-                if (cell != null && !getCellValueAsString(cell).trim().isEmpty()) {
-                    hasData = true;
-                    break;
-                }
+    // Inserts the draft the first time, then updates only the fields edited
+    // since (re-inserting if its row was deleted meanwhile). Quiet saves
+    // (autosave) report in the status bar instead of dialogs. A save asked for
+    // while another is running waits for it, then writes the fields as they
+    // are by then; if the form has moved to another record meanwhile, it
+    // writes what was in the form when it was asked for. Completes once
+    // written, on the EDT.
+    private CompletableFuture<Integer> saveDraft(boolean quiet) {
+        if (studentNameField.getText().trim().isEmpty()) {
+            if (!quiet) {
+                JOptionPane.showMessageDialog(this, "Please enter student name before saving.");
             }
-            
-            if (!hasData) {
-                return false; // Skip empty rows
+            return CompletableFuture.completedFuture(draftId);
+        }
+        TransferCertificate snapshot = toRecord().withId(draftId);
+        BitSet snapshotFields = changedFields();
+        int version = draftVersion;
+        CompletableFuture<Integer> previous = lastSave;
+        int previousVersion = lastSaveVersion;
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        lastSave = done;
+        lastSaveVersion = version;
+        // previous completes on the EDT, after its markSaved
+        previous.handle((previousId, previousError) -> {
+            if (version == draftVersion) {
+                writeDraft(toRecord().withId(draftId), changedFields(), version, quiet, done);
+            } else if (snapshot.getId() == 0 && previousVersion == version && previousError == null) {
+                writeDraft(snapshot.withId(previousId), snapshotFields, version, quiet, done); // inserted by previous
+            } else {
+                writeDraft(snapshot, snapshotFields, version, quiet, done);
             }
+            return null;
+        });
+        return done;
+    }
 
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            String sql = "INSERT INTO transfer_certificates " +
-                "(student_name, register_no, serial_no, father_name, dob, dob_words, nationality, " +
-                "religion, caste, gender, admission_date, course, games, ncc, fee_concession, " +
-                "result, leaving_date, class_leaving, qualified, reason, issue_date, conduct, " +
-                "remarks, umis_no) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            
-            for (int i = 0; i < 24; i++) {
-                Cell cell = row.getCell(i);
-                String value = getCellValueAsString(cell);
-                pstmt.setString(i + 1, value);
+    private void writeDraft(TransferCertificate record, BitSet changed, int version, boolean quiet,
+                            CompletableFuture<Integer> done) {
+        if (record.getId() > 0 && changed.isEmpty()) {
+            if (!quiet) {
+                showNotification("No changes to save");
             }
-            
-            pstmt.executeUpdate();
-            pstmt.close();
-                        conn.close();
-            return true;
-        } catch (Exception e) {
-            System.err.println("Error importing row: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            done.complete(record.getId());
+            return;
         }
-    }
 
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
-        
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-                    return sdf.format(cell.getDateCellValue());
+        // Written on the database writer thread; the form stays responsive
+        repository.save(record, changed).whenComplete((id, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                if (version != draftVersion) {
+                    JOptionPane.showMessageDialog(this, "Error saving " + record.getStudentName() + " to database: "
+                        + error.getMessage());
+                } else if (quiet) {
+                    showNotification("Auto-save failed: " + error.getMessage());
                 } else {
-                    double numValue = cell.getNumericCellValue();
-                    // Check if it's a whole number
-                    if (numValue == Math.floor(numValue)) {
-                        return String.valueOf((long) numValue);
-                    } else {
-                        return String.valueOf(numValue);
-                    }
+                    JOptionPane.showMessageDialog(this, "Error saving to database: " + error.getMessage());
                 }
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                try {
-                    return String.valueOf(cell.getNumericCellValue());
-                } catch (Exception e) {
-                    return cell.getStringCellValue();
-                }
-            default:
-                return "";
-        }
+                error.printStackTrace();
+                done.completeExceptionally(error);
+                return;
+            }
+            if (version == draftVersion) {
+                markSaved(id, record);
+            }
+            
+            if (!quiet) {
+                JOptionPane.showMessageDialog(this, "Data saved to database successfully!");
+            }
+            showNotification(quiet ? "Auto-saved successfully!" : "Saved successfully!");
+            changeFeed.poll();
+            done.complete(id);
+        }));
     }
 
-    private void saveToDatabase() {
-        if (studentNameField.getText().trim().isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Please enter student name before saving.");
-            return;
-        }
-        
-        try {
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            String sql = "INSERT INTO transfer_certificates " +
-                "(student_name, register_no, serial_no, father_name, dob, dob_words, nationality, " +
-                "religion, caste, gender, admission_date, course, games, ncc, fee_concession, " +
-                "result, leaving_date, class_leaving, qualified, reason, issue_date, conduct, " +
-                "remarks, umis_no) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, studentNameField.getText());
-            pstmt.setString(2, registerNoField.getText());
-            pstmt.setString(3, serialNoField.getText());
-            pstmt.setString(4, fatherNameField.getText());
-            pstmt.setString(5, dobField.getText());
-            pstmt.setString(6, dobWordsField.getText());
-            pstmt.setString(7, nationalityField.getText());
-            pstmt.setString(8, religionField.getText());
-            pstmt.setString(9, casteField.getText());
-            pstmt.setString(10, genderField.getText());
-            pstmt.setString(11, admissionDateField.getText());
-            pstmt.setString(12, courseField.getText());
-            pstmt.setString(13, gamesField.getText());
-            pstmt.setString(14, nccField.getText());
-            pstmt.setString(15, feeConcessionField.getText());
-            pstmt.setString(16, resultField.getText());
-            pstmt.setString(17, leavingDateField.getText());
-            pstmt.setString(18, classLeavingField.getText());
-            pstmt.setString(19, qualifiedField.getText());
-            pstmt.setString(20, reasonField.getText());
-            pstmt.setString(21, issueDateField.getText());
-            pstmt.setString(22, conductField.getText());
-            pstmt.setString(23, remarksField.getText());
-            pstmt.setString(24, umisField.getText());
-            
-            pstmt.executeUpdate();
-            pstmt.close();
-            conn.close();
-            
-            JOptionPane.showMessageDialog(this, "Data saved to database successfully!");
-            showNotification("Saved successfully!");
-            refreshStudentSelector();
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error saving to database: " + e.getMessage());
-            e.printStackTrace();
+    // Completes once everything typed into the draft so far has been saved
+    private CompletableFuture<Integer> flushDraft() {
+        if (hasUnsavedChanges()) {
+            return saveDraft(true);
         }
+        return lastSave.isDone() ? CompletableFuture.completedFuture(draftId) : lastSave;
     }
 
     private void loadFromDatabase() {
-        String selectedStudent = (String) studentSelector.getSelectedItem();
-        if (selectedStudent == null || selectedStudent.equals("Select Student")) {
+        String selectedStudent = selectedStudentName();
+        if (selectedStudent == null) {
             JOptionPane.showMessageDialog(this, "Please select a student from the dropdown");
             return;
         }
@@ -1124,81 +1082,186 @@ private void updateStatus(String message) {
     }
 
     private void loadSelectedStudent() {
-        String selectedStudent = (String) studentSelector.getSelectedItem();
-        if (selectedStudent == null || selectedStudent.equals("Select Student")) return;
+        String selectedStudent = selectedStudentName();
+        if (selectedStudent == null) return;
 
         try {
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            String sql = "SELECT * FROM transfer_certificates WHERE student_name = ? ORDER BY id DESC LIMIT 1";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, selectedStudent);
-            
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                studentNameField.setText(rs.getString("student_name") != null ? rs.getString("student_name") : "");
-                registerNoField.setText(rs.getString("register_no") != null ? rs.getString("register_no") : "");
-                serialNoField.setText(rs.getString("serial_no") != null ? rs.getString("serial_no") : "");
-                fatherNameField.setText(rs.getString("father_name") != null ? rs.getString("father_name") : "");
-                dobField.setText(rs.getString("dob") != null ? rs.getString("dob") : "");
-                dobWordsField.setText(rs.getString("dob_words") != null ? rs.getString("dob_words") : "");
-                nationalityField.setText(rs.getString("nationality") != null ? rs.getString("nationality") : "");
-                religionField.setText(rs.getString("religion") != null ? rs.getString("religion") : "");
-                casteField.setText(rs.getString("caste") != null ? rs.getString("caste") : "");
-                genderField.setText(rs.getString("gender") != null ? rs.getString("gender") : "");
-                admissionDateField.setText(rs.getString("admission_date") != null ? rs.getString("admission_date") : "");
-                courseField.setText(rs.getString("course") != null ? rs.getString("course") : "");
-                gamesField.setText(rs.getString("games") != null ? rs.getString("games") : "");
-                nccField.setText(rs.getString("ncc") != null ? rs.getString("ncc") : "");
-                feeConcessionField.setText(rs.getString("fee_concession") != null ? rs.getString("fee_concession") : "");
-                resultField.setText(rs.getString("result") != null ? rs.getString("result") : "");
-                leavingDateField.setText(rs.getString("leaving_date") != null ? rs.getString("leaving_date") : "");
-                classLeavingField.setText(rs.getString("class_leaving") != null ? rs.getString("class_leaving") : "");
-                qualifiedField.setText(rs.getString("qualified") != null ? rs.getString("qualified") : "");
-                reasonField.setText(rs.getString("reason") != null ? rs.getString("reason") : "");
-                issueDateField.setText(rs.getString("issue_date") != null ? rs.getString("issue_date") : "");
-                conductField.setText(rs.getString("conduct") != null ? rs.getString("conduct") : "");
-                remarksField.setText(rs.getString("remarks") != null ? rs.getString("remarks") : "");
-                umisField.setText(rs.getString("umis_no") != null ? rs.getString("umis_no") : "");
-                
+            TransferCertificate tc = repository.findLatestByName(selectedStudent);
+            if (tc != null) {
+                showRecord(tc);
                 showNotification("Loaded: " + selectedStudent);
             }
-            rs.close();
-            pstmt.close();
-            conn.close();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Error loading from database: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    // Rebuilds the type-ahead index off the EDT; at startup, and when the
+    // change feed has too many changes to patch in
+    private void applyChanges(List<CertificateChange> changes) {
+        studentIndex.apply(changes);
+        if (changesDuringBuild != null) {
+            changesDuringBuild.addAll(changes);
+        }
+    }
+
+    // Rebuilds the index in the background. Changes polled meanwhile may not
+    // be in what the build read, so they are applied to the new index again
+    // before it replaces the old one (apply is idempotent). Only the latest
+    // build is installed.
     private void refreshStudentSelector() {
-        studentSelector.removeAllItems();
-        studentSelector.addItem("Select Student");
-        
-        try {
-            Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            String sql = "SELECT DISTINCT student_name FROM transfer_certificates WHERE student_name IS NOT NULL AND student_name != '' ORDER BY student_name";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            
-            while (rs.next()) {
-                String studentName = rs.getString("student_name");
-                if (studentName != null && !studentName.trim().isEmpty()) {
-                    studentSelector.addItem(studentName);
+        int build = ++selectorBuild;
+        changesDuringBuild = new ArrayList<>();
+        new SwingWorker<StudentIndex, Void>() {
+            @Override
+            protected StudentIndex doInBackground() throws Exception {
+                return StudentIndex.build(repository.findSelectorKeys());
+            }
+
+            @Override
+            protected void done() {
+                if (build != selectorBuild) {
+                    return;
+                }
+                List<CertificateChange> missed = changesDuringBuild;
+                changesDuringBuild = null;
+                try {
+                    StudentIndex index = get();
+                    index.apply(missed);
+                    studentIndex = index;
+                    suggestScheduler.reset();
+                    setSelectorItems(studentIndex.suggest("", MAX_SUGGESTIONS), selectorEditor().getText());
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error refreshing student selector: " + e.getMessage());
+                    e.printStackTrace();
                 }
             }
-            rs.close();
-            stmt.close();
-            conn.close();
-        } catch (Exception e) {
-            System.err.println("Error refreshing student selector: " + e.getMessage());
-            e.printStackTrace();
+        }.execute();
+    }
+
+    private JTextField selectorEditor() {
+        return (JTextField) studentSelector.getEditor().getEditorComponent();
+    }
+
+    private void scheduleSuggestions() {
+        if (!updatingSelector) {
+            suggestScheduler.schedule(selectorEditor().getText());
+        }
+    }
+
+    private void showSuggestions(String text) {
+        // Typing stops on a name just picked from the list; don't reopen the popup
+        if (text.equals(lastChosenStudent)) {
+            return;
+        }
+        List<String> matches = studentIndex.suggest(text, MAX_SUGGESTIONS);
+        setSelectorItems(matches, text);
+        if (!matches.isEmpty() && studentSelector.isShowing()) {
+            studentSelector.showPopup();
+        } else {
+            studentSelector.hidePopup();
         }
     }
 
+    // Swaps in the whole list as one model (one event) and keeps the typed text
+    private void setSelectorItems(List<String> items, String text) {
+        updatingSelector = true;
+        try {
+            JTextField editor = selectorEditor();
+            int caret = editor.getCaretPosition();
+            DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>(items.toArray(new String[0]));
+            model.setSelectedItem(text);
+            studentSelector.setModel(model);
+            editor.setText(text);
+            editor.setCaretPosition(Math.min(caret, text.length()));
+        } finally {
+            updatingSelector = false;
+        }
+    }
+
+    // Name typed or picked in the selector, or null when it is blank
+    private String selectedStudentName() {
+        Object item = studentSelector.getSelectedItem();
+        return item == null || item.toString().trim().isEmpty() ? null : item.toString();
+    }
+
+    // Form fields in TransferCertificate.COLUMNS order
+    private JTextField[] recordFields() {
+        return new JTextField[] {
+            studentNameField, registerNoField, serialNoField, fatherNameField, dobField,
+            dobWordsField, nationalityField, religionField, casteField, genderField,
+            admissionDateField, courseField, gamesField, nccField, feeConcessionField,
+            resultField, leavingDateField, classLeavingField, qualifiedField, reasonField,
+            issueDateField, conductField, remarksField, umisField
+        };
+    }
+
+    private TransferCertificate toRecord() {
+        JTextField[] fields = recordFields();
+        String[] values = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = fields[i].getText();
+        }
+        return new TransferCertificate(0, values);
+    }
+
+    // Opens record id in the shared edit form, building the form only the
+    // first time (or after it was closed). Unsaved edits to the record it
+    // showed, and a save still running, finish first; if they fail, that
+    // record stays in the form. false when there is no such record.
+    static boolean editRecord(int id) throws SQLException {
+        TransferCertificate tc = TransferCertificateRepository.getInstance().findById(id);
+        if (tc == null) {
+            return false;
+        }
+        if (editor == null || !editor.isDisplayable()) {
+            editor = new TransferCertificateForm();
+            // Closing it goes back to the View window rather than quitting
+            editor.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+            editor.open(tc);
+            return true;
+        }
+        TransferCertificateForm form = editor;
+        form.flushDraft().whenComplete((saved, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                form.toFront();
+                JOptionPane.showMessageDialog(form, "The changes to the record being edited could not be saved,"
+                    + " so it was kept open:\n" + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            form.open(tc);
+        }));
+        return true;
+    }
+
+    private void open(TransferCertificate tc) {
+        showRecord(tc);
+        showNotification("Editing: " + tc.getStudentName());
+        setVisible(true);
+        setExtendedState(getExtendedState() & ~Frame.ICONIFIED);
+        toFront();
+    }
+
+    // Dates are shown as dd-MM-yyyy; the repository stores them as yyyy-MM-dd
+    // The record becomes the draft: saving updates its row
+    void showRecord(TransferCertificate tc) {
+        JTextField[] fields = recordFields();
+        fillingFields = true;
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                String value = tc.get(i);
+                fields[i].setText(CertificateDates.isDateField(i) ? CertificateDates.toEntry(value) : value);
+            }
+        } finally {
+            fillingFields = false;
+        }
+        startDraft(tc.getId());
+    }
+
+    // Starts a new draft; the next save inserts a new row
     private void clearAllFields() {
+        fillingFields = true;
         studentNameField.setText("");
         registerNoField.setText("");
         serialNoField.setText("");
@@ -1223,55 +1286,26 @@ private void updateStatus(String message) {
         conductField.setText("");
         remarksField.setText("");
         umisField.setText("");
-        studentSelector.setSelectedIndex(0);
+        fillingFields = false;
+        startDraft(0);
+        lastChosenStudent = null;
+        suggestScheduler.reset();
+        setSelectorItems(studentIndex.suggest("", MAX_SUGGESTIONS), "");
         searchField.setText("");
         showNotification("Form cleared");
     }
 
     private void convertDOBToWords() {
-        try {
-            String inputDate = dobField.getText().trim();
-            if (inputDate.isEmpty()) return;
-
-            SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-            Date date = sdf.parse(inputDate);
-
-            SimpleDateFormat dayFmt = new SimpleDateFormat("dd");
-            SimpleDateFormat monthFmt = new SimpleDateFormat("MMMM");
-            SimpleDateFormat yearFmt = new SimpleDateFormat("yyyy");
-
-            String dobWords = dayFmt.format(date) + " " + monthFmt.format(date).toUpperCase()
-                    + " " + convertYearToWords(Integer.parseInt(yearFmt.format(date)));
+        String inputDate = dobField.getText().trim();
+        if (inputDate.isEmpty()) return;
 
-            dobWordsField.setText(dobWords);
-        } catch (Exception ex) {
-            dobWordsField.setText("Invalid Date");
-            System.err.println("Error converting DOB to words: " + ex.getMessage());
-        }
-    }
-
-    private String convertYearToWords(int year) {
-        String[] ones = {"", "ONE", "TWO", "THREE", "FOUR", "FIVE", "SIX", "SEVEN", "EIGHT", "NINE"};
-        String[] tens = {"", "", "TWENTY", "THIRTY", "FORTY", "FIFTY", "SIXTY", "SEVENTY", "EIGHTY", "NINETY"};
-        String[] teens = {"TEN", "ELEVEN", "TWELVE", "THIRTEEN", "FOURTEEN", "FIFTEEN",
-                          "SIXTEEN", "SEVENTEEN", "EIGHTEEN", "NINETEEN"};
-
-        StringBuilder sb = new StringBuilder();
-        int thousands = year / 1000;
-        int hundreds = (year % 1000) / 100;
-        int lastTwo = year % 100;
-
-        if (thousands != 0) sb.append(ones[thousands]).append(" THOUSAND ");
-        if (hundreds != 0) sb.append(ones[hundreds]).append(" HUNDRED ");
-
-        if (lastTwo >= 10 && lastTwo <= 19) {
-            sb.append(teens[lastTwo - 10]);
+        LocalDate date = CertificateDates.parse(inputDate);
+        if (date != null) {
+            dobWordsField.setText(CertificateDates.toWords(date));
         } else {
-            if (lastTwo / 10 != 0) sb.append(tens[lastTwo / 10]).append(" ");
-            if (lastTwo % 10 != 0) sb.append(ones[lastTwo % 10]);
+            dobWordsField.setText("Invalid Date");
+            System.err.println("Error converting DOB to words: unparseable date " + inputDate);
         }
-
-        return sb.toString().trim();
     }
 
 // =================== Generate PDF with Dialog ===================
@@ -0,0 +1,618 @@
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// All SQL against transfer_certificates lives here. Prepared statements are
+// compiled once per pooled connection and reused, so repeated loads/saves
+// skip SQLite's statement parse/plan step. Single-record lookups go through
+// a RecordCache, which every write here invalidates once it has committed.
+public final class TransferCertificateRepository {
+
+    private static final String TABLE = "transfer_certificates";
+    private static final String ALL_COLUMNS = "id, " + String.join(", ", TransferCertificate.COLUMNS);
+
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE + " (" +
+            String.join(", ", TransferCertificate.COLUMNS) + ") VALUES (" +
+            placeholders(TransferCertificate.FIELD_COUNT) + ")";
+    private static final String UPDATE_SQL = "UPDATE " + TABLE + " SET " +
+            String.join(" = ?, ", TransferCertificate.COLUMNS) + " = ? WHERE id = ?";
+    private static final String FIND_BY_ID_SQL =
+            "SELECT " + ALL_COLUMNS + " FROM " + TABLE + " WHERE id = ?";
+    private static final String FIND_LATEST_BY_NAME_SQL =
+            "SELECT " + ALL_COLUMNS + " FROM " + TABLE + " WHERE student_name = ? ORDER BY id DESC LIMIT 1";
+    private static final String FIND_LATEST_BY_REGISTER_NO_SQL =
+            "SELECT " + ALL_COLUMNS + " FROM " + TABLE + " WHERE register_no = ? ORDER BY id DESC LIMIT 1";
+    // Latest record per name for a chunk of names; one seek per name on idx_tc_student_name
+    private static final int NAMES_PER_QUERY = 512;
+    private static final String FIND_LATEST_BY_NAMES_SQL = "SELECT " + ALL_COLUMNS + " FROM " + TABLE +
+            " WHERE id IN (SELECT MAX(id) FROM " + TABLE + " WHERE student_name IN (%s) GROUP BY student_name)" +
+            " ORDER BY student_name";
+    private static final String DELETE_SQL = "DELETE FROM " + TABLE + " WHERE id = ?";
+    private static final String DELETE_BY_NAME_SQL = "DELETE FROM " + TABLE + " WHERE student_name = ?";
+    // Bulk delete stages the ids in a per-connection temp table, then deletes with one statement
+    private static final String CREATE_DELETE_IDS_SQL = "CREATE TEMP TABLE IF NOT EXISTS delete_ids (id INTEGER PRIMARY KEY)";
+    private static final String ADD_DELETE_ID_SQL = "INSERT OR IGNORE INTO temp.delete_ids (id) VALUES (?)";
+    private static final String DELETE_STAGED_SQL = "DELETE FROM " + TABLE + " WHERE id IN (SELECT id FROM temp.delete_ids)";
+    private static final String CLEAR_DELETE_IDS_SQL = "DELETE FROM temp.delete_ids";
+    private static final String STUDENT_NAMES_SQL = "SELECT DISTINCT student_name FROM " + TABLE +
+            " WHERE student_name IS NOT NULL AND student_name != '' ORDER BY student_name";
+    private static final String SEARCH_NAMES_SQL = "SELECT DISTINCT student_name FROM " + TABLE +
+            " WHERE id IN (SELECT rowid FROM tc_search WHERE tc_search MATCH ?) ORDER BY student_name";
+    private static final String SELECTOR_KEYS_SQL = "SELECT id, student_name, register_no, umis_no FROM " + TABLE +
+            " WHERE student_name IS NOT NULL AND student_name != ''";
+    private static final String LAST_ID_SQL = "SELECT last_insert_rowid()";
+    private static final String LATEST_CHANGE_SQL = "SELECT COALESCE(MAX(seq), 0) FROM change_log";
+    // Record columns first so map() reads them; t.id is NULL once the record is gone
+    private static final String CHANGES_SINCE_SQL = "SELECT t.id, t." +
+            String.join(", t.", TransferCertificate.COLUMNS) + ", c.seq, c.op, c.record_id" +
+            " FROM change_log c LEFT JOIN " + TABLE + " t ON t.id = c.record_id" +
+            " WHERE c.seq > ? ORDER BY c.seq LIMIT ?";
+    // Archiving: only well-formed ISO issue dates are partitioned by year
+    private static final String ISO_ISSUE_DATE = "issue_date GLOB '[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9]'";
+    private static final String ARCHIVE_YEARS_SQL = "SELECT DISTINCT substr(issue_date, 1, 4) FROM " + TABLE +
+            " WHERE issue_date BETWEEN '0000-01-01' AND ? AND " + ISO_ISSUE_DATE;
+    private static final String ARCHIVE_COPY_SQL = "INSERT INTO " + CertificateArchive.SCHEMA + "." + TABLE +
+            " (" + ALL_COLUMNS + ", created_date) SELECT " + ALL_COLUMNS + ", created_date FROM main." + TABLE +
+            " WHERE issue_date BETWEEN ? AND ? AND " + ISO_ISSUE_DATE +
+            " AND id NOT IN (SELECT id FROM " + CertificateArchive.SCHEMA + "." + TABLE + ")";
+    private static final String ARCHIVE_DELETE_SQL = "DELETE FROM main." + TABLE +
+            " WHERE issue_date BETWEEN ? AND ? AND " + ISO_ISSUE_DATE +
+            " AND id IN (SELECT id FROM " + CertificateArchive.SCHEMA + "." + TABLE + ")";
+
+    private static TransferCertificateRepository instance;
+
+    private final DatabaseManager db;
+    // Per-connection statement cache; connections are long-lived (see DatabaseManager)
+    private final Map<Connection, Map<String, PreparedStatement>> statements = new WeakHashMap<>();
+    private final RecordCache cache = new RecordCache(RecordCache.DEFAULT_CAPACITY);
+    // Matches per archive year for the last query that included the archive,
+    // so paging skips whole years without attaching them; reset by archive moves
+    private final Object archiveCountLock = new Object();
+    private CertificateQuery archiveCountsQuery;
+    private Map<Integer, Integer> archiveCounts;
+    private long archiveVersion;
+
+    private TransferCertificateRepository(DatabaseManager db) {
+        this.db = db;
+    }
+
+    public static synchronized TransferCertificateRepository getInstance() {
+        if (instance == null) {
+            instance = new TransferCertificateRepository(DatabaseManager.getInstance());
+        }
+        return instance;
+    }
+
+    public TransferCertificate findById(int id) throws SQLException {
+        TransferCertificate cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.generation();
+        TransferCertificate tc = db.read(conn -> {
+            PreparedStatement ps = prepare(conn, FIND_BY_ID_SQL);
+            ps.setInt(1, id);
+            return single(ps);
+        });
+        cache.put(tc, generation);
+        return tc;
+    }
+
+    public TransferCertificate findLatestByName(String studentName) throws SQLException {
+        TransferCertificate cached = cache.getByName(studentName);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.generation();
+        TransferCertificate tc = db.read(conn -> {
+            PreparedStatement ps = prepare(conn, FIND_LATEST_BY_NAME_SQL);
+            ps.setString(1, studentName);
+            return single(ps);
+        });
+        cache.putLatestByName(studentName, tc, generation);
+        return tc;
+    }
+
+    public TransferCertificate findLatestByRegisterNo(String registerNo) throws SQLException {
+        TransferCertificate cached = cache.getByRegisterNo(registerNo);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.generation();
+        TransferCertificate tc = db.read(conn -> {
+            PreparedStatement ps = prepare(conn, FIND_LATEST_BY_REGISTER_NO_SQL);
+            ps.setString(1, registerNo);
+            return single(ps);
+        });
+        cache.putLatestByRegisterNo(registerNo, tc, generation);
+        return tc;
+    }
+
+    // Latest record for each of the names (as findLatestByName), ordered by
+    // name; names without a record are skipped. One query per
+    // NAMES_PER_QUERY names, all on one connection, instead of one per name.
+    public List<TransferCertificate> findLatestByNames(List<String> names) throws SQLException {
+        return db.read(conn -> {
+            List<TransferCertificate> result = new ArrayList<>(names.size());
+            for (int from = 0; from < names.size(); from += NAMES_PER_QUERY) {
+                List<String> chunk = names.subList(from, Math.min(names.size(), from + NAMES_PER_QUERY));
+                // Padded to a power of two (repeating the last name), so few statement shapes get cached
+                int slots = Integer.highestOneBit(chunk.size() * 2 - 1);
+                PreparedStatement ps = prepare(conn, String.format(FIND_LATEST_BY_NAMES_SQL, placeholders(slots)));
+                for (int i = 0; i < slots; i++) {
+                    ps.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(map(rs));
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    // Hit/miss counters and size of the record cache
+    public String cacheStats() {
+        return cache.toString();
+    }
+
+    // For writes made outside this class's methods (imports through batchWriter)
+    public void invalidateCache() {
+        cache.clear();
+    }
+
+    // Inserts the record and returns its generated id. Dates are stored as
+    // yyyy-MM-dd; IllegalArgumentException if a date column is not a date.
+    public int insert(TransferCertificate tc) throws SQLException {
+        TransferCertificate checked = CertificateDates.checked(tc);
+        int id = db.write(conn -> insert(conn, checked));
+        cache.invalidateKeys(checked);
+        return id;
+    }
+
+    // Insert on a connection the caller already holds (e.g. inside a larger write)
+    int insert(Connection conn, TransferCertificate tc) throws SQLException {
+        PreparedStatement ps = prepare(conn, INSERT_SQL);
+        bindFields(ps, CertificateDates.checked(tc));
+        ps.executeUpdate();
+        try (ResultSet rs = prepare(conn, LAST_ID_SQL).executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Batched INSERTs for imports; each chunk is its own writer task and clears the cache once committed
+    public CertificateBatchWriter batchWriter(int chunkSize) {
+        return new CertificateBatchWriter(db, conn -> prepare(conn, INSERT_SQL), this::invalidateCache, chunkSize);
+    }
+
+    // Same date checks as insert
+    public boolean update(TransferCertificate tc) throws SQLException {
+        TransferCertificate checked = CertificateDates.checked(tc);
+        boolean updated = db.write(conn -> {
+            PreparedStatement ps = prepare(conn, UPDATE_SQL);
+            bindFields(ps, checked);
+            ps.setInt(TransferCertificate.FIELD_COUNT + 1, checked.getId());
+            return ps.executeUpdate() > 0;
+        });
+        cache.invalidate(checked.getId());
+        cache.invalidateKeys(checked);
+        return updated;
+    }
+
+    // Upsert for a form draft, on the writer thread: when the record has an
+    // id and its row still exists, only the given columns are written;
+    // otherwise the whole record is inserted. Completes with the row's id.
+    // Leaving the search columns out also skips the tc_search update trigger.
+    public CompletableFuture<Integer> save(TransferCertificate tc, BitSet fields) {
+        TransferCertificate checked;
+        try {
+            // Only the dates being written; insert() checks them all if the row is new after all
+            checked = CertificateDates.checked(tc, tc.getId() > 0 && !fields.isEmpty() ? fields : null);
+        } catch (IllegalArgumentException e) {
+            CompletableFuture<Integer> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return db.submit(conn -> {
+            if (checked.getId() > 0 && !fields.isEmpty() && updateFields(conn, checked, fields)) {
+                return checked.getId();
+            }
+            return insert(conn, checked);
+        }).whenComplete((id, error) -> {
+            cache.invalidate(checked.getId());
+            cache.invalidateKeys(checked);
+        });
+    }
+
+    private boolean updateFields(Connection conn, TransferCertificate tc, BitSet fields) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(TABLE).append(" SET ");
+        for (int f = fields.nextSetBit(0); f >= 0; f = fields.nextSetBit(f + 1)) {
+            sql.append(f == fields.nextSetBit(0) ? "" : ", ").append(TransferCertificate.COLUMNS[f]).append(" = ?");
+        }
+        sql.append(" WHERE id = ?");
+        // Not through prepare(): there is one statement per column set, and the cache would keep them all
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int param = 1;
+            for (int f = fields.nextSetBit(0); f >= 0; f = fields.nextSetBit(f + 1)) {
+                ps.setString(param++, tc.get(f));
+            }
+            ps.setInt(param, tc.getId());
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    public boolean delete(int id) throws SQLException {
+        boolean deleted = db.write(conn -> {
+            PreparedStatement ps = prepare(conn, DELETE_SQL);
+            ps.setInt(1, id);
+            return ps.executeUpdate() > 0;
+        });
+        cache.invalidate(id);
+        return deleted;
+    }
+
+    // Deletes all the ids in one transaction and one DELETE, on the writer
+    // thread; completes with the rows removed
+    public CompletableFuture<Integer> deleteAll(int[] ids) {
+        if (ids.length == 0) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return db.submit(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_DELETE_IDS_SQL);
+            }
+            PreparedStatement clear = prepare(conn, CLEAR_DELETE_IDS_SQL);
+            clear.executeUpdate();
+            PreparedStatement add = prepare(conn, ADD_DELETE_ID_SQL);
+            for (int id : ids) {
+                add.setInt(1, id);
+                add.addBatch();
+            }
+            add.executeBatch();
+            int deleted = prepare(conn, DELETE_STAGED_SQL).executeUpdate();
+            clear.executeUpdate();
+            return deleted;
+        }).whenComplete((deleted, error) -> cache.invalidate(ids));
+    }
+
+    public CompletableFuture<Integer> deleteByStudentName(String studentName) {
+        return db.submit(conn -> {
+            PreparedStatement ps = prepare(conn, DELETE_BY_NAME_SQL);
+            ps.setString(1, studentName);
+            return ps.executeUpdate();
+        }).whenComplete((deleted, error) -> cache.clear());
+    }
+
+    // Streams every record to the handler without materialising the table.
+    // orderBy must be "id" or one of TransferCertificate.COLUMNS.
+    public int scan(String orderBy, boolean descending, Consumer<TransferCertificate> handler) throws SQLException {
+        String sql = "SELECT " + ALL_COLUMNS + " FROM " + TABLE +
+                " ORDER BY " + checkColumn(orderBy) + (descending ? " DESC" : "") +
+                (orderBy.equals("id") ? "" : ", id");
+        return db.read(conn -> {
+            int count = 0;
+            try (ResultSet rs = prepare(conn, sql).executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(map(rs));
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    // Rows matching the query's filter, including the archive files when the query asks for them
+    public int count(CertificateQuery query) throws SQLException {
+        long version;
+        synchronized (archiveCountLock) {
+            version = archiveVersion;
+        }
+        return db.read(conn -> {
+            int total = count(conn, query, "main");
+            if (query.isIncludingArchive()) {
+                Map<Integer, Integer> counts = new HashMap<>();
+                for (int year : CertificateArchive.years()) {
+                    CertificateArchive.use(conn, year);
+                    int rows = count(conn, query, CertificateArchive.SCHEMA);
+                    counts.put(year, rows);
+                    total += rows;
+                }
+                synchronized (archiveCountLock) {
+                    if (version == archiveVersion) {
+                        archiveCountsQuery = query;
+                        archiveCounts = counts;
+                    }
+                }
+            }
+            return total;
+        });
+    }
+
+    // One page of the query's results. For id order, afterId > 0 continues
+    // from that row via the primary key (keyset); offset then skips whole
+    // rows beyond it, so it should be 0 whenever the previous page is known.
+    // With the archive included, the live rows come first and then each
+    // archive year, newest first; whole years before the offset are skipped
+    // by their count (from count(), when it was run for this query) and only
+    // the years the page overlaps are read.
+    public List<TransferCertificate> page(CertificateQuery query, int afterId, int offset, int limit)
+            throws SQLException {
+        return db.read(conn -> {
+            List<TransferCertificate> result = new ArrayList<>(limit);
+            int skip = pageSegment(conn, query, "main", afterId, offset, limit, result);
+            if (query.isIncludingArchive()) {
+                Map<Integer, Integer> counts;
+                synchronized (archiveCountLock) {
+                    counts = query.equals(archiveCountsQuery) ? archiveCounts : null;
+                }
+                for (int year : CertificateArchive.years()) {
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                    Integer rows = counts == null ? null : counts.get(year);
+                    if (rows != null && rows <= skip) {
+                        skip -= rows;
+                        continue;
+                    }
+                    CertificateArchive.use(conn, year);
+                    skip = pageSegment(conn, query, CertificateArchive.SCHEMA, 0, skip, limit, result);
+                }
+            }
+            return result;
+        });
+    }
+
+    // Moves every record issued before the given year into the archive file
+    // of its issue year; completes with the number of records moved. Runs on
+    // the writer thread outside any group transaction, since a file can only
+    // be attached between transactions. Each year is copied, committed, then
+    // deleted from the live table (which updates tc_search and change_log):
+    // a commit spanning the WAL main database and an archive file is not
+    // atomic, so the order makes an interruption leave a record in both
+    // places, never in neither, and the next run finishes the move.
+    public CompletableFuture<Integer> archiveIssuedBefore(int year) {
+        String before = year - 1 + "-12-31";
+        return db.exclusive(conn -> {
+            List<String> years;
+            try (PreparedStatement ps = conn.prepareStatement(ARCHIVE_YEARS_SQL)) {
+                ps.setString(1, before);
+                years = strings(ps);
+            }
+            int moved = 0;
+            for (String y : years) {
+                moved += archiveYear(conn, Integer.parseInt(y));
+            }
+            return moved;
+        }).whenComplete((moved, error) -> {
+            cache.clear();
+            synchronized (archiveCountLock) {
+                archiveVersion++;
+                archiveCountsQuery = null;
+                archiveCounts = null;
+            }
+        });
+    }
+
+    private int archiveYear(Connection conn, int year) throws SQLException {
+        CertificateArchive.attach(conn, year, true);
+        try {
+            conn.setAutoCommit(false);
+            try (PreparedStatement copy = conn.prepareStatement(ARCHIVE_COPY_SQL);
+                 PreparedStatement delete = conn.prepareStatement(ARCHIVE_DELETE_SQL)) {
+                yearRange(copy, year);
+                copy.executeUpdate();
+                conn.commit();
+                yearRange(delete, year);
+                int moved = delete.executeUpdate();
+                conn.commit();
+                return moved;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            CertificateArchive.detach(conn);
+        }
+    }
+
+    private static void yearRange(PreparedStatement ps, int year) throws SQLException {
+        ps.setString(1, year + "-01-01");
+        ps.setString(2, year + "-12-31");
+    }
+
+    private int count(Connection conn, CertificateQuery query, String schema) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM " + schema + "." + TABLE + where(query, schema, params, 0);
+        try (ResultSet rs = bound(conn, schema, sql, params).executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Appends up to limit - result.size() rows of one schema, skipping its
+    // first skip matches; returns how much of skip is left for the next schema
+    private int pageSegment(Connection conn, CertificateQuery query, String schema, int afterId, int skip,
+                            int limit, List<TransferCertificate> result) throws SQLException {
+        if (skip > 0 && query.isIncludingArchive()) {
+            int rows = count(conn, query, schema);
+            if (rows <= skip) {
+                return skip - rows;
+            }
+        }
+        List<Object> params = new ArrayList<>();
+        String dir = query.isDescending() ? " DESC" : "";
+        String sql = "SELECT " + ALL_COLUMNS + " FROM " + schema + "." + TABLE +
+                where(query, schema, params, query.isKeysetOrder() ? afterId : 0) +
+                " ORDER BY " + checkColumn(query.getOrderBy()) + dir +
+                (query.isKeysetOrder() ? "" : ", id" + dir) + " LIMIT ? OFFSET ?";
+        params.add(limit - result.size());
+        params.add(skip);
+        try (ResultSet rs = bound(conn, schema, sql, params).executeQuery()) {
+            while (rs.next()) {
+                result.add(map(rs));
+            }
+        }
+        return 0;
+    }
+
+    // Statements on the live table are cached; those on an archive are not,
+    // as the file behind the archive schema changes from year to year
+    private PreparedStatement bound(Connection conn, String schema, String sql, List<Object> params)
+            throws SQLException {
+        PreparedStatement ps = schema.equals("main") ? prepare(conn, sql) : conn.prepareStatement(sql);
+        bind(ps, params);
+        if (!schema.equals("main")) {
+            ps.closeOnCompletion();
+        }
+        return ps;
+    }
+
+    public List<String> findStudentNames() throws SQLException {
+        return db.read(conn -> strings(prepare(conn, STUDENT_NAMES_SQL)));
+    }
+
+    // {id, student_name, register_no, umis_no} of every named record, for StudentIndex
+    public List<String[]> findSelectorKeys() throws SQLException {
+        return db.read(conn -> {
+            List<String[]> result = new ArrayList<>();
+            try (ResultSet rs = prepare(conn, SELECTOR_KEYS_SQL).executeQuery()) {
+                while (rs.next()) {
+                    result.add(new String[] {rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)});
+                }
+            }
+            return result;
+        });
+    }
+
+    // Newest change_log sequence number; 0 when nothing has changed yet
+    public long latestChangeSeq() throws SQLException {
+        return db.readInBackground(conn -> {
+            try (ResultSet rs = prepare(conn, LATEST_CHANGE_SQL).executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
+    // Up to limit change_log entries after seq, oldest first, each with the record as it is now
+    public List<CertificateChange> changesSince(long seq, int limit) throws SQLException {
+        return db.readInBackground(conn -> {
+            PreparedStatement ps = prepare(conn, CHANGES_SINCE_SQL);
+            ps.setLong(1, seq);
+            ps.setInt(2, limit);
+            List<CertificateChange> result = new ArrayList<>();
+            int base = TransferCertificate.FIELD_COUNT + 1;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rs.getInt(1);
+                    TransferCertificate record = rs.wasNull() ? null : map(rs);
+                    result.add(new CertificateChange(rs.getLong(base + 1), rs.getInt(base + 3),
+                            rs.getString(base + 2).charAt(0), record));
+                }
+            }
+            return result;
+        });
+    }
+
+    // Names whose student name, register no or father name has a word
+    // starting with each word of the term (full-text prefix match)
+    public List<String> searchStudentNames(String term) throws SQLException {
+        String match = CertificateQuery.matchExpression(term);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        return db.read(conn -> {
+            PreparedStatement ps = prepare(conn, SEARCH_NAMES_SQL);
+            ps.setString(1, "{student_name register_no father_name} : (" + match + ")");
+            return strings(ps);
+        });
+    }
+
+    static TransferCertificate map(ResultSet rs) throws SQLException {
+        String[] values = new String[TransferCertificate.FIELD_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rs.getString(i + 2); // column 1 is id
+        }
+        return new TransferCertificate(rs.getInt(1), values);
+    }
+
+    PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        synchronized (statements) {
+            Map<String, PreparedStatement> cache = statements.computeIfAbsent(conn, c -> new HashMap<>());
+            PreparedStatement ps = cache.get(sql);
+            if (ps == null || ps.isClosed()) {
+                ps = conn.prepareStatement(sql);
+                cache.put(sql, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+    }
+
+    private static void bindFields(PreparedStatement ps, TransferCertificate tc) throws SQLException {
+        for (int i = 0; i < TransferCertificate.FIELD_COUNT; i++) {
+            ps.setString(i + 1, tc.get(i));
+        }
+    }
+
+    private static String where(CertificateQuery query, String schema, List<Object> params, int afterId) {
+        List<String> clauses = new ArrayList<>();
+        query.conditions(schema, clauses, params);
+        if (afterId > 0) {
+            clauses.add(query.isDescending() ? "id < ?" : "id > ?");
+            params.add(afterId);
+        }
+        return clauses.isEmpty() ? "" : " WHERE " + String.join(" AND ", clauses);
+    }
+
+    private static void bind(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private static TransferCertificate single(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? map(rs) : null;
+        }
+    }
+
+    private static List<String> strings(PreparedStatement ps) throws SQLException {
+        List<String> result = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                result.add(rs.getString(1));
+            }
+        }
+        return result;
+    }
+
+    private static String checkColumn(String column) {
+        if (column.equals("id")) {
+            return column;
+        }
+        for (String c : TransferCertificate.COLUMNS) {
+            if (c.equals(column)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + column);
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
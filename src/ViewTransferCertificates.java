@@ -1,17 +1,17 @@
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.FileOutputStream;
 import java.sql.*;
 import java.text.SimpleDateFormat;
-import java.text.ParseException;
 import java.util.Date;
 import java.util.Calendar;
-import java.util.regex.PatternSyntaxException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
 import javax.swing.event.DocumentListener;
@@ -26,8 +26,7 @@ import java.io.InputStream;
 public class ViewTransferCertificates extends JFrame {
     // Core components
     private JTable table;
-    private DefaultTableModel model;
-    private TableRowSorter<DefaultTableModel> sorter;
+    private CertificateTableModel model;
     
     // Buttons
     private JButton backButton, deleteButton, generatePDFButton, viewButton;
@@ -36,10 +35,14 @@ public class ViewTransferCertificates extends JFrame {
     
     // Search and filter components
     private JTextField searchField;
+    private SearchScheduler searchScheduler;
     private JComboBox<String> filterComboBox;
     private JComboBox<String> statusFilter;
     private JDateChooser fromDateChooser, toDateChooser;
+    private JCheckBox includeArchivedBox;
     private JButton clearFiltersButton;
+    private boolean resettingFilters;
+    private ChangeFeed changeFeed;
     
     // Status and info components
     private JLabel statusLabel;
@@ -53,9 +56,9 @@ public class ViewTransferCertificates extends JFrame {
     // Popup menu
     private JPopupMenu rightClickMenu;
     
-    // Date formatter for parsing string dates
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
-    private SimpleDateFormat displayDateFormat = new SimpleDateFormat("dd/MM/yyyy");
+    // Shared SQLite connections (writer + WAL readers)
+    private final DatabaseManager db = DatabaseManager.getInstance();
+    private final TransferCertificateRepository repository = TransferCertificateRepository.getInstance();
     
     // Constants
     private static final String[] FILTER_OPTIONS = {
@@ -67,12 +70,26 @@ public class ViewTransferCertificates extends JFrame {
         "All Status", "Completed", "Pending", "Issued"
     };
 
+    // Academic year typed in the search box for "By Academic Year"
+    private static final Pattern YEAR = Pattern.compile("\\b(19|20)\\d{2}\\b");
+
     public ViewTransferCertificates() {
         initializeComponents();
         setupLayout();
         setupEventHandlers();
+        // Started before the first load so no write in between is missed
+        changeFeed = new ChangeFeed(repository, ChangeFeed.DEFAULT_POLL_MS, model::applyChanges, model::refresh);
+        changeFeed.start();
         loadData();
         updateRecordCount();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                searchScheduler.cancel();
+                changeFeed.stop();
+                model.close();
+            }
+        });
     }
 
     private void initializeComponents() {
@@ -81,35 +98,30 @@ public class ViewTransferCertificates extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Initialize table and model
-        model = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        // Rows are paged in from the database on demand; sorting and
+        // searching are pushed down into SQL (see CertificateTableModel)
+        model = new CertificateTableModel(repository);
+        model.setErrorHandler(e -> {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error loading data: " + e.getMessage(),
+                    "Database Error", JOptionPane.ERROR_MESSAGE);
+        });
         
         table = new JTable(model);
         table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
-        table.setAutoCreateRowSorter(true);
         table.getTableHeader().setReorderingAllowed(true);
         
-        // Setup table sorter
-        sorter = new TableRowSorter<>(model);
-        table.setRowSorter(sorter);
-        
-        // Add columns - Updated to match transfer certificate format
-        String[] columns = {
-    "ID", "Student Name", "Register No", "Serial No", "Father Name",
-    "Date of Birth", "DOB (Words)", "Nationality", "Religion", "Caste", "Gender",
-    "Admission Date", "Course", "Games/Activities", "Fee Concession", "Last Exam Result",
-    "Leaving Date", "Class at Leaving", "Qualified for Promotion", "Reason for Leaving",
-    "Issue Date", "Conduct Character", "Other Remarks", "UMIS No"
-};
-        
-        for (String column : columns) {
-            model.addColumn(column);
-        }
+        // Header click sorts by that column; clicking again reverses it
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(table.columnAtPoint(e.getPoint()));
+                if (column >= 0) {
+                    sortBy(model.getSortColumn(column));
+                }
+            }
+        });
+        model.addTableModelListener(e -> updateRecordCount());
         
         // Initialize search and filter components
         searchField = new JTextField(20);
@@ -117,6 +129,8 @@ public class ViewTransferCertificates extends JFrame {
         
         filterComboBox = new JComboBox<>(FILTER_OPTIONS);
         statusFilter = new JComboBox<>(STATUS_OPTIONS);
+        includeArchivedBox = new JCheckBox("Include archived");
+        includeArchivedBox.setToolTipText("Also search records moved to the yearly archive files");
         
         fromDateChooser = new JDateChooser();
         toDateChooser = new JDateChooser();
@@ -236,6 +250,7 @@ private Color darkenColor(Color color, float factor) {
         // Tools Menu
         toolsMenu = new JMenu("Tools");
         toolsMenu.add(createMenuItem("Database Backup", null, e -> backupDatabase()));
+        toolsMenu.add(createMenuItem("Compact Database", null, e -> compactDatabase()));
         toolsMenu.add(createMenuItem("Generate Reports", null, e -> generateReports()));
         toolsMenu.add(createMenuItem("Data Validation", null, e -> validateData()));
         toolsMenu.add(createMenuItem("Settings", null, e -> openSettings()));
@@ -343,6 +358,7 @@ private Color darkenColor(Color color, float factor) {
         searchPanel.add(filterComboBox);
         searchPanel.add(new JLabel("Status:"));
         searchPanel.add(statusFilter);
+        searchPanel.add(includeArchivedBox);
         searchPanel.add(clearFiltersButton);
         
         topPanel.add(searchPanel, BorderLayout.WEST);
@@ -407,16 +423,19 @@ private Color darkenColor(Color color, float factor) {
     }
 
     private void setupEventHandlers() {
-        // Search functionality
+        // Search functionality: debounced, so a burst of typing runs one query
+        searchScheduler = new SearchScheduler(SearchScheduler.DEFAULT_DEBOUNCE_MS, this::performSearch);
         searchField.getDocument().addDocumentListener(new DocumentListener() {
-            public void changedUpdate(DocumentEvent e) { performSearch(); }
-            public void removeUpdate(DocumentEvent e) { performSearch(); }
-            public void insertUpdate(DocumentEvent e) { performSearch(); }
+            public void changedUpdate(DocumentEvent e) { searchScheduler.schedule(searchField.getText()); }
+            public void removeUpdate(DocumentEvent e) { searchScheduler.schedule(searchField.getText()); }
+            public void insertUpdate(DocumentEvent e) { searchScheduler.schedule(searchField.getText()); }
         });
+        searchField.addActionListener(e -> searchScheduler.flush());
         
         // Filter functionality
         filterComboBox.addActionListener(e -> applyFilters());
         statusFilter.addActionListener(e -> applyFilters());
+        includeArchivedBox.addActionListener(e -> applyFilters());
         
         // Date chooser listeners
         fromDateChooser.addPropertyChangeListener("date", e -> applyDateFilter());
@@ -489,169 +508,101 @@ private Color darkenColor(Color color, float factor) {
         });
     }
 
-  // Fixed loadData method for SQLite
-private void loadData() {
-    SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-        @Override
-        protected Void doInBackground() throws Exception {
-            SwingUtilities.invokeLater(() -> {
-                updateStatus("Loading data...");
-                progressBar.setVisible(true);
-                progressBar.setIndeterminate(true);
-            });
-
-            try {
-                // SQLite connection (DB file same folder la irukkum)
-                Connection conn = DriverManager.getConnection("jdbc:sqlite:college.db");
-                Statement stmt = conn.createStatement();
-
-                // Query: must match SQLite table columns
-                String query = "SELECT id, student_name, register_no, serial_no, father_name, " +
-                        "dob, dob_words, nationality, religion, caste, gender, " +
-                        "admission_date, course, games, fee_concession, result, " +
-                        "leaving_date, class_leaving, qualified, reason, " +
-                        "issue_date, conduct, remarks, umis_no " +
-                        "FROM transfer_certificates ORDER BY id DESC";
-
-                ResultSet rs = stmt.executeQuery(query);
-
-                SwingUtilities.invokeLater(() -> model.setRowCount(0));
-
-                while (rs.next()) {
-                    Object[] row = new Object[24];
-                    row[0]  = rs.getInt("id");
-                    row[1]  = rs.getString("student_name");
-                    row[2]  = rs.getString("register_no");
-                    row[3]  = rs.getString("serial_no");
-                    row[4]  = rs.getString("father_name");
-                    row[5]  = formatDateString(rs.getString("dob"));
-                    row[6]  = rs.getString("dob_words");
-                    row[7]  = rs.getString("nationality");
-                    row[8]  = rs.getString("religion");
-                    row[9]  = rs.getString("caste");
-                    row[10] = rs.getString("gender");
-                    row[11] = formatDateString(rs.getString("admission_date"));
-                    row[12] = rs.getString("course");
-                    row[13] = rs.getString("games");
-                    row[14] = rs.getString("fee_concession");
-                    row[15] = rs.getString("result");
-                    row[16] = formatDateString(rs.getString("leaving_date"));
-                    row[17] = rs.getString("class_leaving");
-                    row[18] = rs.getString("qualified");
-                    row[19] = rs.getString("reason");
-                    row[20] = formatDateString(rs.getString("issue_date"));
-                    row[21] = rs.getString("conduct");
-                    row[22] = rs.getString("remarks");
-                    row[23] = rs.getString("umis_no");
-
-                    SwingUtilities.invokeLater(() -> model.addRow(row));
-                }
+    // Re-counts and reloads the visible page; other pages load as they scroll into view
+    private void loadData() {
+        model.refresh();
+        updateButtonStates();
+    }
 
-                rs.close();
-                stmt.close();
-                conn.close();
+    private void sortBy(String column) {
+        CertificateQuery query = model.getQuery();
+        boolean descending = column.equals(query.getOrderBy()) ? !query.isDescending() : column.equals("id");
+        model.setQuery(query.withOrder(column, descending));
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() ->
-                        JOptionPane.showMessageDialog(ViewTransferCertificates.this,
-                                "Error loading data: " + e.getMessage(), "Database Error",
-                                JOptionPane.ERROR_MESSAGE));
-            }
+    // Runs in the background; a newer search cancels this one (see CertificateTableModel)
+    private void performSearch(String text) {
+        model.setQuery(buildQuery(text));
+    }
 
-            return null;
+    private void applyFilters() {
+        if (!resettingFilters) {
+            performSearch(searchField.getText());
         }
+    }
 
-        @Override
-        protected void done() {
-            SwingUtilities.invokeLater(() -> {
-                progressBar.setVisible(false);
-                updateStatus("Data loaded successfully");
-                updateRecordCount();
-                updateButtonStates();
-            });
+    private void applyDateFilter() {
+        LocalDate from = toLocalDate(fromDateChooser.getDate());
+        LocalDate to = toLocalDate(toDateChooser.getDate());
+        if (from != null && to != null && from.isAfter(to)) {
+            updateStatus("'From' date is after 'To' date");
         }
-    };
-
-    worker.execute();
-}
-
+        applyFilters();
+    }
 
-    // Helper method to format date strings
-    private String formatDateString(String dateStr) {
-        if (dateStr == null || dateStr.trim().isEmpty()) {
-            return "";
-        }
-        
-        try {
-            // Try different date formats
-            Date date = null;
-            String[] formats = {"dd-MM-yyyy", "yyyy-MM-dd", "dd/MM/yyyy", "MM/dd/yyyy"};
-            
-            for (String format : formats) {
-                try {
-                    SimpleDateFormat sdf = new SimpleDateFormat(format);
-                    date = sdf.parse(dateStr.trim());
-                    break;
-                } catch (ParseException e) {
-                    // Try next format
-                }
-            }
-            
-            if (date != null) {
-                return displayDateFormat.format(date);
+    // Search box, filter type, status and issue date range as one query; the
+    // repository runs it as a single WHERE clause, so only matching rows are read
+    private CertificateQuery buildQuery(String text) {
+        CertificateQuery query = model.getQuery().withSearch(text).withSearchColumn(null).withAdmissionYear(0);
+        String filterType = (String) filterComboBox.getSelectedItem();
+        if ("By Student Name".equals(filterType)) {
+            query = query.withSearchColumn("student_name");
+        } else if ("By Admission No".equals(filterType)) {
+            query = query.withSearchColumn("register_no");
+        } else if ("By Course".equals(filterType)) {
+            query = query.withSearchColumn("course");
+        } else if ("By Academic Year".equals(filterType)) {
+            int year = yearIn(text);
+            if (year != 0) {
+                query = query.withSearch("").withAdmissionYear(year);
             }
-        } catch (Exception e) {
-            // If all parsing fails, return original string
         }
-        
-        return dateStr;
+        return query.withStatus(selectedStatus()).withArchive(includeArchivedBox.isSelected()).withIssueDates(
+                toLocalDate(fromDateChooser.getDate()), toLocalDate(toDateChooser.getDate()));
     }
 
-    private void performSearch() {
-        String text = searchField.getText();
-        if (text.trim().length() == 0) {
-            sorter.setRowFilter(null);
-        } else {
-            try {
-                sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
-            } catch (PatternSyntaxException e) {
-                // Invalid regex, ignore
-            }
-        }
-        updateRecordCount();
+    private CertificateQuery.Status selectedStatus() {
+        String status = (String) statusFilter.getSelectedItem();
+        if ("Completed".equals(status)) return CertificateQuery.Status.COMPLETED;
+        if ("Pending".equals(status)) return CertificateQuery.Status.PENDING;
+        if ("Issued".equals(status)) return CertificateQuery.Status.ISSUED;
+        return CertificateQuery.Status.ANY;
     }
 
-    private void applyFilters() {
-        String filterType = (String) filterComboBox.getSelectedItem();
-        performSearch();
-        updateRecordCount();
+    // First four-digit year in the text ("2023-24" -> 2023); 0 when there is none
+    private static int yearIn(String text) {
+        Matcher m = YEAR.matcher(text);
+        return m.find() ? Integer.parseInt(m.group()) : 0;
     }
 
-    private void applyDateFilter() {
-        Date fromDate = fromDateChooser.getDate();
-        Date toDate = toDateChooser.getDate();
-        
-        if (fromDate != null && toDate != null) {
-            updateRecordCount();
-        }
+    private static LocalDate toLocalDate(Date date) {
+        return date == null ? null : date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
     }
 
     private void clearAllFilters() {
-        searchField.setText("");
-        filterComboBox.setSelectedIndex(0);
-        statusFilter.setSelectedIndex(0);
-        fromDateChooser.setDate(null);
-        toDateChooser.setDate(null);
-        sorter.setRowFilter(null);
-        updateRecordCount();
+        // Reset every control first, then run one query instead of one per control
+        resettingFilters = true;
+        try {
+            searchField.setText("");
+            filterComboBox.setSelectedIndex(0);
+            statusFilter.setSelectedIndex(0);
+            includeArchivedBox.setSelected(false);
+            fromDateChooser.setDate(null);
+            toDateChooser.setDate(null);
+        } finally {
+            resettingFilters = false;
+        }
+        searchScheduler.cancel();
+        searchScheduler.reset(); // so typing the old search again re-applies it
+        applyFilters();
         updateStatus("All filters cleared");
     }
 
     private void updateRecordCount() {
-        int totalRecords = model.getRowCount();
-        int visibleRecords = table.getRowCount();
+        int totalRecords = model.getTotalCount();
+        int visibleRecords = model.getRowCount();
         recordCountLabel.setText(String.format("Records: %d / %d", visibleRecords, totalRecords));
+        recordCountLabel.setToolTipText(repository.cacheStats());
     }
 
     private void updateButtonStates() {
@@ -689,24 +640,23 @@ private void loadData() {
     if (result != JOptionPane.YES_OPTION) return;
 
     try {
-        // SQLite connection (no username/password required)
-        Connection conn = DriverManager.getConnection("jdbc:sqlite:college.db");
-
-        PreparedStatement stmt = conn.prepareStatement(
-            "DELETE FROM transfer_certificates WHERE id = ?");
-
-        for (int i = selectedRows.length - 1; i >= 0; i--) {
-            int modelRow = table.convertRowIndexToModel(selectedRows[i]);
-            int id = (int) model.getValueAt(modelRow, 0); // assumes 'id' is first column
-            stmt.setInt(1, id);
-            stmt.executeUpdate();
+        int[] ids = new int[selectedRows.length];
+        for (int i = 0; i < selectedRows.length; i++) {
+            ids[i] = model.getIdAt(table.convertRowIndexToModel(selectedRows[i]));
         }
 
-        stmt.close();
-        conn.close();
-
-        loadData(); // reload table after deletion
-        updateStatus(String.format("%d record(s) deleted successfully", selectedRows.length));
+        // One transaction and one DELETE for the whole selection, on the writer thread
+        repository.deleteAll(ids).whenComplete((deleted, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this,
+                    "Error deleting record(s): " + error.getMessage(),
+                    "Database Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            changeFeed.poll(); // the deletes come back through the change log and are removed in place
+            updateStatus(String.format("%d record(s) deleted successfully", deleted));
+        }));
 
     } catch (Exception e) {
         e.printStackTrace();
@@ -728,29 +678,30 @@ private void loadData() {
         
         try {
             // Get data from selected row
-            String studentName = getString(model.getValueAt(modelRow, 1));
-String registerNo = getString(model.getValueAt(modelRow, 2));
-String serialNo = getString(model.getValueAt(modelRow, 3));
-String fatherName = getString(model.getValueAt(modelRow, 4));
-String dateOfBirth = getString(model.getValueAt(modelRow, 5));
-String dobWords = getString(model.getValueAt(modelRow, 6));
-String nationality = getString(model.getValueAt(modelRow, 7));
-String religion = getString(model.getValueAt(modelRow, 8));
-String caste = getString(model.getValueAt(modelRow, 9));
-String gender = getString(model.getValueAt(modelRow, 10));
-String admissionDate = getString(model.getValueAt(modelRow, 11));
-String course = getString(model.getValueAt(modelRow, 12));
-String gamesActivities = getString(model.getValueAt(modelRow, 13));
-String feeConcession = getString(model.getValueAt(modelRow, 14));
-String lastExamResult = getString(model.getValueAt(modelRow, 15));
-String leavingDate = getString(model.getValueAt(modelRow, 16));
-String classAtLeaving = getString(model.getValueAt(modelRow, 17));
-String qualifiedPromotion = getString(model.getValueAt(modelRow, 18));
-String reasonLeaving = getString(model.getValueAt(modelRow, 19));
-String issueDate = getString(model.getValueAt(modelRow, 20));
-String conductCharacter = getString(model.getValueAt(modelRow, 21));
-String otherRemarks = getString(model.getValueAt(modelRow, 22));
-String umisNo = getString(model.getValueAt(modelRow, 23));
+            Object[] row = currentRow(modelRow);
+            String studentName = getString(row[1]);
+String registerNo = getString(row[2]);
+String serialNo = getString(row[3]);
+String fatherName = getString(row[4]);
+String dateOfBirth = getString(row[5]);
+String dobWords = getString(row[6]);
+String nationality = getString(row[7]);
+String religion = getString(row[8]);
+String caste = getString(row[9]);
+String gender = getString(row[10]);
+String admissionDate = getString(row[11]);
+String course = getString(row[12]);
+String gamesActivities = getString(row[13]);
+String feeConcession = getString(row[14]);
+String lastExamResult = getString(row[15]);
+String leavingDate = getString(row[16]);
+String classAtLeaving = getString(row[17]);
+String qualifiedPromotion = getString(row[18]);
+String reasonLeaving = getString(row[19]);
+String issueDate = getString(row[20]);
+String conductCharacter = getString(row[21]);
+String otherRemarks = getString(row[22]);
+String umisNo = getString(row[23]);
 
 // Create PDF
 Document document = new Document(PageSize.A4);
@@ -908,6 +859,14 @@ private String getString(Object obj) {
         }
 
         int modelRow = table.convertRowIndexToModel(selectedRow);
+        Object[] row;
+        try {
+            row = currentRow(modelRow);
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(this, "Error loading record: " + e.getMessage(),
+                "Database Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         
         // Create detailed view dialog
         JDialog viewDialog = new JDialog(this, "Transfer Certificate Details", true);
@@ -940,7 +899,7 @@ private String getString(Object obj) {
             gbc.fill = GridBagConstraints.HORIZONTAL;
             gbc.weightx = 1.0;
             
-            Object value = model.getValueAt(modelRow, i);
+            Object value = row[i];
             String displayValue = value != null ? value.toString() : "";
             
             JTextField field = new JTextField(displayValue);
@@ -967,6 +926,14 @@ private String getString(Object obj) {
         viewDialog.setVisible(true);
     }
 
+    // The record behind a grid row as it is now: from the repository (usually
+    // its record cache), or the row as shown when the record is not in the
+    // live table (archived)
+    private Object[] currentRow(int modelRow) throws SQLException {
+        TransferCertificate tc = repository.findById(model.getIdAt(modelRow));
+        return tc != null ? CertificateTableModel.toRow(tc) : model.getRow(modelRow);
+    }
+
     // Placeholder methods for menu items and other functionality
     private void openNewCertificateDialog() {
         JOptionPane.showMessageDialog(this, "New Certificate Dialog - To be implemented");
@@ -992,49 +959,12 @@ private String getString(Object obj) {
         return;
     }
 
-    // Reg No (unique) from table - assuming column 2 is register_no
-    String registerNo = table.getValueAt(selectedRow, 2).toString();
-
-    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:college.db")) {
-        String sql = "SELECT * FROM transfer_certificates WHERE register_no = ?";
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, registerNo);
-        ResultSet rs = ps.executeQuery();
-
-        if (rs.next()) {
-            // Open Transfer Certificate Form
-            TransferCertificateForm form = new TransferCertificateForm();
-
-            // Fill fields in the form from DB
-            form.studentNameField.setText(rs.getString("student_name"));
-            form.registerNoField.setText(rs.getString("register_no"));
-            form.serialNoField.setText(rs.getString("serial_no"));
-            form.fatherNameField.setText(rs.getString("father_name"));
-            form.dobField.setText(rs.getString("dob"));
-            form.dobWordsField.setText(rs.getString("dob_words"));
-            form.nationalityField.setText(rs.getString("nationality"));
-            form.religionField.setText(rs.getString("religion"));
-            form.casteField.setText(rs.getString("caste"));
-            form.genderField.setText(rs.getString("gender"));
-            form.admissionDateField.setText(rs.getString("admission_date"));
-            form.courseField.setText(rs.getString("course"));
-            form.gamesField.setText(rs.getString("games"));
-            form.nccField.setText(rs.getString("ncc"));
-            form.feeConcessionField.setText(rs.getString("fee_concession"));
-            form.resultField.setText(rs.getString("result"));
-            form.leavingDateField.setText(rs.getString("leaving_date"));
-            form.classLeavingField.setText(rs.getString("class_leaving"));
-            form.qualifiedField.setText(rs.getString("qualified"));
-            form.reasonField.setText(rs.getString("reason"));
-            form.issueDateField.setText(rs.getString("issue_date"));
-            form.conductField.setText(rs.getString("conduct"));
-            form.remarksField.setText(rs.getString("remarks"));
-            form.umisField.setText(rs.getString("umis_no"));
-
-            // Show the form
-            form.setVisible(true);
-        } else {
-            JOptionPane.showMessageDialog(this, "Record not found in database!");
+    try {
+        // By primary key, in the one shared edit form (see TransferCertificateForm.editRecord)
+        int id = model.getIdAt(table.convertRowIndexToModel(selectedRow));
+        if (!TransferCertificateForm.editRecord(id)) {
+            JOptionPane.showMessageDialog(this,
+                "Record not found in database!\nArchived records can be viewed and printed, but not edited.");
         }
 
     } catch (Exception e) {
@@ -1073,7 +1003,44 @@ private String getString(Object obj) {
     }
     
     private void backupDatabase() {
-        JOptionPane.showMessageDialog(this, "Database Backup - To be implemented");
+        updateStatus("Backing up database...");
+        // Snapshot is taken in the background; the grid and the form keep working meanwhile
+        DatabaseBackup.start(db).whenComplete((snapshot, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this,
+                    "Error backing up database: " + error.getMessage(),
+                    "Backup Error", JOptionPane.ERROR_MESSAGE);
+                updateStatus("Backup failed");
+                return;
+            }
+            String summary = String.format("Backup saved to %s with %d archive file(s) (%.1f MB in %.1f s)",
+                snapshot.file.getPath(), snapshot.archives, snapshot.bytes / (1024.0 * 1024.0),
+                snapshot.millis / 1000.0);
+            updateStatus(summary);
+            JOptionPane.showMessageDialog(this, summary, "Database Backup", JOptionPane.INFORMATION_MESSAGE);
+        }));
+    }
+
+    private void compactDatabase() {
+        int confirm = JOptionPane.showConfirmDialog(this,
+            "Compacting rewrites the whole database file. Saving is paused until it finishes.\nContinue?",
+            "Compact Database", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) {
+            return;
+        }
+        updateStatus("Compacting database...");
+        MaintenanceScheduler.compact(db).whenComplete((summary, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error compacting database: " + error.getMessage(),
+                    "Compact Database", JOptionPane.ERROR_MESSAGE);
+                updateStatus("Compaction failed");
+                return;
+            }
+            updateStatus(summary);
+            JOptionPane.showMessageDialog(this, summary, "Compact Database", JOptionPane.INFORMATION_MESSAGE);
+        }));
     }
     
     private void generateReports() {
@@ -1148,74 +1115,96 @@ private String getString(Object obj) {
     }
     
     private void exportAllRecords() {
-        try {
-            // Create a comprehensive PDF with all records
-            Document document = new Document(PageSize.A4.rotate()); // Landscape for table
-            String fileName = "All_Transfer_Certificates_" + 
-                            new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()) + ".pdf";
-            
-            PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(fileName));
-            document.open();
+        String fileName = "All_Transfer_Certificates_" + 
+                        new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()) + ".pdf";
+        exportAllButton.setEnabled(false);
+        progressBar.setVisible(true);
+        progressBar.setIndeterminate(true);
+        updateStatus("Exporting all records to PDF...");
+
+        // Reading every record and writing the PDF both run off the EDT
+        SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                // Create a comprehensive PDF with all records
+                Document document = new Document(PageSize.A4.rotate()); // Landscape for table
+
+                PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(fileName));
+                document.open();
+
+                Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLACK);
+                Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.BLACK);
+                Font contentFont = FontFactory.getFont(FontFactory.HELVETICA, 8, BaseColor.BLACK);
+
+                Paragraph title = new Paragraph("TRANSFER CERTIFICATES - COMPLETE REPORT", titleFont);
+                title.setAlignment(Element.ALIGN_CENTER);
+                title.setSpacingAfter(20);
+                document.add(title);
+
+                // Create table with main columns
+                PdfPTable table = new PdfPTable(8);
+                table.setWidthPercentage(100);
+                table.setWidths(new float[]{8f, 15f, 15f, 12f, 12f, 12f, 12f, 14f});
+
+                // Add headers
+                String[] headers = {"ID", "Student Name", "Father Name", "Course", 
+                                  "Admission Date", "Leaving Date", "Issue Date", "Reason"};
+
+                for (String header : headers) {
+                    PdfPCell cell = new PdfPCell(new Phrase(header, headerFont));
+                    cell.setBackgroundColor(new BaseColor(200, 200, 200));
+                    cell.setPadding(5);
+                    table.addCell(cell);
+                }
 
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.BLACK);
-            Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.BLACK);
-            Font contentFont = FontFactory.getFont(FontFactory.HELVETICA, 8, BaseColor.BLACK);
-            
-            Paragraph title = new Paragraph("TRANSFER CERTIFICATES - COMPLETE REPORT", titleFont);
-            title.setAlignment(Element.ALIGN_CENTER);
-            title.setSpacingAfter(20);
-            document.add(title);
-
-            // Create table with main columns
-            PdfPTable table = new PdfPTable(8);
-            table.setWidthPercentage(100);
-            table.setWidths(new float[]{8f, 15f, 15f, 12f, 12f, 12f, 12f, 14f});
-
-            // Add headers
-            String[] headers = {"ID", "Student Name", "Father Name", "Course", 
-                              "Admission Date", "Leaving Date", "Issue Date", "Reason"};
-            
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Phrase(header, headerFont));
-                cell.setBackgroundColor(new BaseColor(200, 200, 200));
-                cell.setPadding(5);
-                table.addCell(cell);
+                // Add data rows, streamed from the database (the grid only holds the pages on screen)
+                int exported = repository.scan("id", true, tc -> {
+                    Object[] row = CertificateTableModel.toRow(tc);
+                    table.addCell(new PdfPCell(new Phrase(getString(row[0]), contentFont))); // ID
+                    table.addCell(new PdfPCell(new Phrase(getString(row[1]), contentFont))); // Student Name
+                    table.addCell(new PdfPCell(new Phrase(getString(row[4]), contentFont))); // Father Name
+                    table.addCell(new PdfPCell(new Phrase(getString(row[12]), contentFont))); // Course
+                    table.addCell(new PdfPCell(new Phrase(getString(row[11]), contentFont))); // Admission Date
+                    table.addCell(new PdfPCell(new Phrase(getString(row[16]), contentFont))); // Leaving Date
+                    table.addCell(new PdfPCell(new Phrase(getString(row[20]), contentFont))); // Issue Date
+                    table.addCell(new PdfPCell(new Phrase(getString(row[19]), contentFont)));
+                });
+
+                document.add(table);
+
+                // Add summary
+                document.add(new Paragraph("\n\nSummary:", headerFont));
+                document.add(new Paragraph("Total Records: " + exported, contentFont));
+                document.add(new Paragraph("Report Generated: " + 
+                    new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()), contentFont));
+
+                document.close();
+
+                return exported;
             }
 
-            // Add data rows
-            for (int i = 0; i < model.getRowCount(); i++) {
-                table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 0)), contentFont))); // ID
-table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 1)), contentFont))); // Student Name
-table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 4)), contentFont))); // Father Name
-table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 12)), contentFont))); // Course
-table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 11)), contentFont))); // Admission Date
-table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 16)), contentFont))); // Leaving Date
-table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 20)), contentFont))); // Issue Date
-table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 19)), contentFont)));
+            @Override
+            protected void done() {
+                exportAllButton.setEnabled(true);
+                progressBar.setIndeterminate(false);
+                progressBar.setVisible(false);
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(ViewTransferCertificates.this, 
+                        "All records exported successfully!\nSaved as: " + fileName, 
+                        "Export Complete", JOptionPane.INFORMATION_MESSAGE);
+                    updateStatus("Export completed: " + fileName);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(ViewTransferCertificates.this, 
+                        "Error exporting records: " + cause.getMessage(), 
+                        "Export Error", JOptionPane.ERROR_MESSAGE);
+                    updateStatus("Export failed");
+                }
             }
-
-            document.add(table);
-            
-            // Add summary
-            document.add(new Paragraph("\n\nSummary:", headerFont));
-            document.add(new Paragraph("Total Records: " + model.getRowCount(), contentFont));
-            document.add(new Paragraph("Report Generated: " + 
-                new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()), contentFont));
-
-            document.close();
-            
-            JOptionPane.showMessageDialog(this, 
-                "All records exported successfully!\nSaved as: " + fileName, 
-                "Export Complete", JOptionPane.INFORMATION_MESSAGE);
-            
-            updateStatus("Export completed: " + fileName);
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, 
-                "Error exporting records: " + e.getMessage(), 
-                "Export Error", JOptionPane.ERROR_MESSAGE);
-        }
+        };
+        worker.execute();
     }
     
     private void printSelectedCertificate() {
@@ -1260,10 +1249,26 @@ table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 19)), conten
         if (yearInput != null && !yearInput.trim().isEmpty()) {
             try {
                 int year = Integer.parseInt(yearInput.trim());
-                JOptionPane.showMessageDialog(this, 
-                    "Archive functionality not yet implemented.\n" +
-                    "Would archive records before year: " + year, 
-                    "Archive Feature", JOptionPane.INFORMATION_MESSAGE);
+                int confirm = JOptionPane.showConfirmDialog(this,
+                    "Move all certificates issued before " + year + " to the archive?\n" +
+                    "Archived records stay searchable with \"Include archived\".",
+                    "Archive Records", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+                if (confirm != JOptionPane.YES_OPTION) return;
+
+                updateStatus("Archiving records issued before " + year + "...");
+                // Runs on the writer thread; the moved records leave the grid through the change log
+                repository.archiveIssuedBefore(year).whenComplete((moved, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        error.printStackTrace();
+                        JOptionPane.showMessageDialog(this,
+                            "Error archiving records: " + error.getMessage(),
+                            "Archive Error", JOptionPane.ERROR_MESSAGE);
+                        updateStatus("Archiving failed");
+                        return;
+                    }
+                    changeFeed.poll();
+                    updateStatus(String.format("%d record(s) issued before %d archived", moved, year));
+                }));
             } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, 
                     "Please enter a valid year (e.g., 2020)", 
@@ -1279,15 +1284,16 @@ table.addCell(new PdfPCell(new Phrase(getString(model.getValueAt(i, 19)), conten
             return;
         }
         
-        StringBuilder rowData = new StringBuilder();
-        for (int i = 0; i < table.getColumnCount(); i++) {
-            rowData.append(table.getValueAt(selectedRow, i));
-            if (i < table.getColumnCount() - 1) {
-                rowData.append("\t");
-            }
-        }
-        
         try {
+            Object[] row = model.getRow(table.convertRowIndexToModel(selectedRow));
+            StringBuilder rowData = new StringBuilder();
+            for (int i = 0; i < table.getColumnCount(); i++) {
+                rowData.append(row[table.convertColumnIndexToModel(i)]);
+                if (i < table.getColumnCount() - 1) {
+                    rowData.append("\t");
+                }
+            }
+
             java.awt.datatransfer.StringSelection stringSelection = 
                 new java.awt.datatransfer.StringSelection(rowData.toString());
             java.awt.Toolkit.getDefaultToolkit().getSystemClipboard()